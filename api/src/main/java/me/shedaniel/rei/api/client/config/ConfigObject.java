@@ -258,6 +258,9 @@ public interface ConfigObject {
     
     boolean doesRegisterRecipesInAnotherThread();
     
+    @ApiStatus.Experimental
+    boolean doesFillDisplaysInParallel();
+    
     @Deprecated(forRemoval = true)
     boolean doesSnapToRows();
     
@@ -324,6 +327,14 @@ public interface ConfigObject {
     @ApiStatus.Experimental
     int getAsyncSearchPartitionSize();
     
+    /**
+     * Returns the number of threads used to search, or {@code 0} to decide from the available processors.
+     *
+     * @return the search parallelism
+     */
+    @ApiStatus.Experimental
+    int getAsyncSearchParallelism();
+    
     @ApiStatus.Experimental
     boolean isPatchingAsyncThreadCrash();
     
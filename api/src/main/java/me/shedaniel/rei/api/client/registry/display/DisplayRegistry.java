@@ -184,7 +184,8 @@ public interface DisplayRegistry extends RecipeManagerContext<REIClientPlugin> {
     void registerVisibilityPredicate(DisplayVisibilityPredicate predicate);
     
     /**
-     * Tests the display against all visibility predicates to determine whether it is visible
+     * Tests the display against all visibility predicates to determine whether it is visible,
+     * the result is cached until {@link #invalidateDisplayVisibility()} is called or the displays are reloaded.
      *
      * @param display the display to test against
      * @return whether the display is visible
@@ -201,6 +202,15 @@ public interface DisplayRegistry extends RecipeManagerContext<REIClientPlugin> {
         return !isDisplayVisible(display);
     }
     
+    /**
+     * Invalidates the cached visibility of every display, visibility predicates must call this
+     * when their results change outside of a reload.
+     *
+     * @since 9.1
+     */
+    @ApiStatus.Experimental
+    void invalidateDisplayVisibility();
+    
     /**
      * Returns an unmodifiable list of visibility predicates.
      *
@@ -34,7 +34,6 @@ import me.shedaniel.autoconfig.AutoConfig;
 import me.shedaniel.autoconfig.annotation.ConfigEntry;
 import me.shedaniel.autoconfig.gui.ConfigScreenProvider;
 import me.shedaniel.autoconfig.gui.registry.GuiRegistry;
-import me.shedaniel.autoconfig.serializer.JanksonConfigSerializer;
 import me.shedaniel.autoconfig.util.Utils;
 import me.shedaniel.cloth.clothconfig.shadowed.blue.endless.jankson.Jankson;
 import me.shedaniel.cloth.clothconfig.shadowed.blue.endless.jankson.JsonNull;
@@ -91,6 +90,9 @@ import net.minecraft.world.InteractionResult;
 import org.jetbrains.annotations.ApiStatus;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 import static me.shedaniel.autoconfig.util.Utils.getUnsafely;
@@ -99,12 +101,19 @@ import static me.shedaniel.autoconfig.util.Utils.setUnsafely;
 @ApiStatus.Internal
 @Environment(EnvType.CLIENT)
 public class ConfigManagerImpl implements ConfigManager {
+    private static final long SAVE_DELAY = 500;
     private boolean craftableOnly = false;
     private final Gson gson = new GsonBuilder().create();
     private ConfigObjectImpl object;
+    private final AtomicBoolean savePending = new AtomicBoolean();
     
     public ConfigManagerImpl() {
-        AutoConfig.register(ConfigObjectImpl.class, (definition, configClass) -> new JanksonConfigSerializer<>(definition, configClass, buildJankson(Jankson.builder())));
+        AutoConfig.register(ConfigObjectImpl.class, (definition, configClass) -> new SectionedConfigSerializer(definition, configClass, buildJankson(Jankson.builder())));
+        AutoConfig.getConfigHolder(ConfigObjectImpl.class).registerLoadListener((configHolder, configObject) -> {
+            object = configObject;
+            return InteractionResult.PASS;
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flushConfig, "REI-ConfigFlush"));
         GuiRegistry guiRegistry = AutoConfig.getGuiRegistry(ConfigObjectImpl.class);
         guiRegistry.registerPredicateProvider((i13n, field, config, defaults, guiProvider) -> {
             if (field.isAnnotationPresent(ConfigEntry.Gui.Excluded.class))
@@ -150,7 +159,7 @@ public class ConfigManagerImpl implements ConfigManager {
                 }
                 , (field) -> field.getType() == Map.class, ConfigObjectImpl.UseFilteringCategoriesScreen.class);
         InternalLogger.getInstance().info("Config loaded");
-        saveConfig();
+        saveConfigNow();
     }
     
     private static Jankson buildJankson(Jankson.Builder builder) {
@@ -319,21 +328,42 @@ public class ConfigManagerImpl implements ConfigManager {
         return (ConfigManagerImpl) ConfigManager.getInstance();
     }
     
+    /**
+     * Schedules the config to be saved, saves requested within {@link #SAVE_DELAY} milliseconds
+     * of each other are coalesced into a single save on the client thread.
+     */
     @Override
     public void saveConfig() {
+        if (savePending.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> {
+                if (savePending.compareAndSet(true, false)) {
+                    saveConfigNow();
+                }
+            }, CompletableFuture.delayedExecutor(SAVE_DELAY, TimeUnit.MILLISECONDS, Minecraft.getInstance()));
+        }
+    }
+    
+    /**
+     * Saves the config immediately, the files are still written in the background.
+     */
+    public void saveConfigNow() {
+        savePending.set(false);
         for (FilteringRuleType<?> type : FilteringRuleTypeRegistry.getInstance()) {
             if (type.isSingular() && getConfig().getFilteringRules().stream().noneMatch(filteringRule -> filteringRule.getType().equals(type))) {
                 getConfig().getFilteringRules().add(type.createNew());
             }
         }
-        AutoConfig.getConfigHolder(ConfigObjectImpl.class).registerLoadListener((configHolder, configObject) -> {
-            object = configObject;
-            return InteractionResult.PASS;
-        });
         AutoConfig.getConfigHolder(ConfigObjectImpl.class).save();
         InternalLogger.getInstance().debug("Config saved");
     }
     
+    private void flushConfig() {
+        if (savePending.get()) {
+            saveConfigNow();
+        }
+        SectionedConfigSerializer.flush();
+    }
+    
     @Override
     public ConfigObjectImpl getConfig() {
         if (object == null) {
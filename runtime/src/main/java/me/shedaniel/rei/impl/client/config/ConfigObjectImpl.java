@@ -264,6 +264,11 @@ public class ConfigObjectImpl implements ConfigObject, ConfigData {
         return advanced.miscellaneous.registerRecipesInAnotherThread;
     }
     
+    @Override
+    public boolean doesFillDisplaysInParallel() {
+        return advanced.miscellaneous.fillDisplaysInParallel;
+    }
+    
     @Override
     public boolean doesSnapToRows() {
         return false;
@@ -443,6 +448,12 @@ public class ConfigObjectImpl implements ConfigObject, ConfigData {
         return advanced.search.asyncSearchPartitionSize;
     }
     
+    @Override
+    @ApiStatus.Experimental
+    public int getAsyncSearchParallelism() {
+        return advanced.search.asyncSearchParallelism;
+    }
+    
     @Override
     @ApiStatus.Experimental
     public boolean isPatchingAsyncThreadCrash() {
@@ -579,9 +590,10 @@ public class ConfigObjectImpl implements ConfigObject, ConfigData {
     }
     
     public static class Basics {
-        @ConfigEntry.Gui.Excluded public List<FavoriteEntry> favorites = new ArrayList<>();
-        @ConfigEntry.Gui.Excluded public List<FavoriteEntry> hiddenFavorites = new ArrayList<>();
-        @ConfigEntry.Gui.Excluded public List<CompoundTag> displayHistory = new ArrayList<>();
+        // Saved to their own files by SectionedConfigSerializer, the display history is only read from legacy configs for DisplayHistoryManager
+        @ConfigEntry.Gui.Excluded public transient List<FavoriteEntry> favorites = new ArrayList<>();
+        @ConfigEntry.Gui.Excluded public transient List<FavoriteEntry> hiddenFavorites = new ArrayList<>();
+        @ConfigEntry.Gui.Excluded public transient List<CompoundTag> displayHistory = new ArrayList<>();
         @Comment("Declares whether cheating mode is on.") @ConfigEntry.Gui.EnumHandler(option = ConfigEntry.Gui.EnumHandler.EnumDisplayOption.BUTTON)
         private CheatingMode cheating = CheatingMode.OFF;
         private boolean favoritesEnabled = true;
@@ -702,6 +714,8 @@ public class ConfigObjectImpl implements ConfigObject, ConfigData {
             @Comment("Declares whether REI should search async.") private boolean asyncSearch = true;
             @Comment("Declares how many entries should be grouped one async search.") @ConfigEntry.BoundedDiscrete(min = 25, max = 400)
             private int asyncSearchPartitionSize = 100;
+            @Comment("Declares how many threads should be used to search, 0 to decide from the available processors.") @ConfigEntry.BoundedDiscrete(min = 0, max = 32)
+            private int asyncSearchParallelism = 0;
             private boolean patchAsyncThreadCrash = true;
             @ConfigEntry.Gui.EnumHandler(option = ConfigEntry.Gui.EnumHandler.EnumDisplayOption.BUTTON)
             private SearchMode tooltipSearch = SearchMode.ALWAYS;
@@ -723,6 +737,7 @@ public class ConfigObjectImpl implements ConfigObject, ConfigData {
         public static class Miscellaneous {
             @Comment("Declares whether arrows in containers should be clickable.") private boolean clickableRecipeArrows = true;
             private boolean registerRecipesInAnotherThread = true;
+            @Comment("Declares whether displays should be filled from recipes in parallel.") private boolean fillDisplaysInParallel = false;
             private boolean newFastEntryRendering = true;
             @ConfigEntry.Gui.PrefixText
             private boolean cachingFastEntryRendering = false;
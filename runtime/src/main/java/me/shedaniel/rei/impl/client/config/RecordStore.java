@@ -0,0 +1,211 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.shedaniel.rei.impl.client.config;
+
+import me.shedaniel.rei.impl.common.InternalLogger;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A binary log of {@link CompoundTag} records keyed by {@link UUID}, stored in insertion order.
+ * <p>
+ * Adding and removing records appends to the file, the file is only rewritten once most of it is
+ * removed records. Every record is prefixed by its length, so that a broken record only loses itself.
+ * <p>
+ * The records have to be {@link #load() loaded} before changing them. This is not thread safe,
+ * every store should only be used from one thread at a time.
+ */
+@ApiStatus.Internal
+@Environment(EnvType.CLIENT)
+public class RecordStore {
+    private static final int MAGIC = 0x52454952;
+    private static final int VERSION = 1;
+    private static final byte PUT = 0;
+    private static final byte REMOVE = 1;
+    private static final int MIN_COMPACT_RECORDS = 32;
+    private final Path path;
+    private final LinkedHashMap<UUID, CompoundTag> records = new LinkedHashMap<>();
+    private int deadRecords;
+    private boolean needsRewrite;
+    
+    public RecordStore(Path path) {
+        this.path = path;
+    }
+    
+    public boolean exists() {
+        return Files.exists(path);
+    }
+    
+    /**
+     * Reads the records from the file, replacing the records already in the store.
+     *
+     * @return an unmodifiable view of the records in insertion order
+     */
+    public Map<UUID, CompoundTag> load() {
+        this.records.clear();
+        this.deadRecords = 0;
+        this.needsRewrite = false;
+        if (!Files.exists(path)) {
+            this.needsRewrite = true;
+            return getRecords();
+        }
+        
+        try (DataInputStream stream = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            long size = Files.size(path);
+            if (stream.readInt() != MAGIC || stream.readInt() != VERSION) {
+                InternalLogger.getInstance().warn("Ignoring records of an unknown format at " + path);
+                this.needsRewrite = true;
+                return getRecords();
+            }
+            while (true) {
+                int op = stream.read();
+                if (op == -1) break;
+                UUID key = new UUID(stream.readLong(), stream.readLong());
+                if (op == PUT) {
+                    int length = stream.readInt();
+                    if (length < 0 || length > size) {
+                        // A corrupted length, treat it like a record cut short
+                        throw new EOFException("Invalid record length " + length);
+                    }
+                    byte[] bytes = new byte[length];
+                    stream.readFully(bytes);
+                    try {
+                        CompoundTag previous = records.put(key, NbtIo.read(new DataInputStream(new ByteArrayInputStream(bytes))));
+                        if (previous != null) deadRecords++;
+                    } catch (IOException e) {
+                        InternalLogger.getInstance().warn("Skipping broken record " + key + " at " + path, e);
+                        deadRecords++;
+                    }
+                } else if (op == REMOVE) {
+                    if (records.remove(key) != null) deadRecords++;
+                    deadRecords++;
+                } else {
+                    throw new IOException("Unknown record type " + op);
+                }
+            }
+        } catch (IOException e) {
+            // Most likely a record cut short by a crash, rewrite the file without it on the next change
+            InternalLogger.getInstance().warn("Failed to read every record at " + path, e);
+            this.needsRewrite = true;
+        }
+        return getRecords();
+    }
+    
+    public Map<UUID, CompoundTag> getRecords() {
+        return Collections.unmodifiableMap(records);
+    }
+    
+    public void put(UUID key, CompoundTag tag) {
+        if (records.put(key, tag) != null) deadRecords++;
+        append(PUT, key, tag);
+    }
+    
+    public void remove(UUID key) {
+        if (records.remove(key) != null) {
+            deadRecords += 2;
+            append(REMOVE, key, null);
+        }
+    }
+    
+    /**
+     * Changes the records to the values in order, appending the values after the longest run of existing records
+     * that are kept in order, and removing the other records.
+     */
+    public void sync(List<CompoundTag> values) {
+        int index = 0;
+        List<UUID> removed = new ArrayList<>();
+        for (Map.Entry<UUID, CompoundTag> entry : records.entrySet()) {
+            if (index < values.size() && entry.getValue().equals(values.get(index))) {
+                index++;
+            } else {
+                removed.add(entry.getKey());
+            }
+        }
+        for (UUID key : removed) {
+            remove(key);
+        }
+        for (int i = index; i < values.size(); i++) {
+            put(UUID.randomUUID(), values.get(i));
+        }
+        if (needsRewrite) {
+            rewrite();
+        }
+    }
+    
+    private void append(byte op, UUID key, CompoundTag tag) {
+        if (needsRewrite || !Files.exists(path) || deadRecords >= MIN_COMPACT_RECORDS && deadRecords > records.size()) {
+            rewrite();
+            return;
+        }
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.APPEND)))) {
+            writeRecord(stream, op, key, tag);
+        } catch (IOException e) {
+            InternalLogger.getInstance().warn("Failed to append record to " + path, e);
+            this.needsRewrite = true;
+        }
+    }
+    
+    private void rewrite() {
+        try {
+            Files.createDirectories(path.getParent());
+            Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+            try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                stream.writeInt(MAGIC);
+                stream.writeInt(VERSION);
+                for (Map.Entry<UUID, CompoundTag> entry : records.entrySet()) {
+                    writeRecord(stream, PUT, entry.getKey(), entry.getValue());
+                }
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.deadRecords = 0;
+            this.needsRewrite = false;
+        } catch (IOException e) {
+            InternalLogger.getInstance().warn("Failed to save records to " + path, e);
+            this.needsRewrite = true;
+        }
+    }
+    
+    private static void writeRecord(DataOutputStream stream, byte op, UUID key, CompoundTag tag) throws IOException {
+        stream.writeByte(op);
+        stream.writeLong(key.getMostSignificantBits());
+        stream.writeLong(key.getLeastSignificantBits());
+        if (op == PUT) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            NbtIo.write(tag, new DataOutputStream(bytes));
+            stream.writeInt(bytes.size());
+            bytes.writeTo(stream);
+        }
+    }
+}
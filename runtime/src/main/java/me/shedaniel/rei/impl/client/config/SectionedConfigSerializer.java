@@ -0,0 +1,291 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.shedaniel.rei.impl.client.config;
+
+import dev.architectury.platform.Platform;
+import me.shedaniel.autoconfig.annotation.Config;
+import me.shedaniel.autoconfig.serializer.ConfigSerializer;
+import me.shedaniel.autoconfig.serializer.JanksonConfigSerializer;
+import me.shedaniel.cloth.clothconfig.shadowed.blue.endless.jankson.Jankson;
+import me.shedaniel.cloth.clothconfig.shadowed.blue.endless.jankson.JsonArray;
+import me.shedaniel.cloth.clothconfig.shadowed.blue.endless.jankson.JsonElement;
+import me.shedaniel.cloth.clothconfig.shadowed.blue.endless.jankson.JsonObject;
+import me.shedaniel.cloth.clothconfig.shadowed.blue.endless.jankson.JsonPrimitive;
+import me.shedaniel.rei.api.client.favorites.FavoriteEntry;
+import me.shedaniel.rei.impl.common.InternalLogger;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.TagParser;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Serializes {@link ConfigObjectImpl} with the favorites kept in separate {@link RecordStore record stores},
+ * so that changing them only appends to their own files.
+ * <p>
+ * Everything is snapshotted on the calling thread, and only written when it changed since the last save.
+ * Writes happen in order on a background thread, the main config is written to a temporary file that is then
+ * moved over the previous one.
+ */
+@ApiStatus.Internal
+@Environment(EnvType.CLIENT)
+public class SectionedConfigSerializer implements ConfigSerializer<ConfigObjectImpl> {
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "REI-ConfigWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+    private final JanksonConfigSerializer<ConfigObjectImpl> delegate;
+    private final Jankson jankson;
+    private final Path configPath;
+    private final List<Section<?>> sections;
+    @Nullable
+    private String lastConfig;
+    
+    public SectionedConfigSerializer(Config definition, Class<ConfigObjectImpl> configClass, Jankson jankson) {
+        this.delegate = new JanksonConfigSerializer<>(definition, configClass, jankson);
+        this.jankson = jankson;
+        this.configPath = Platform.getConfigFolder().resolve(definition.name() + ".json5");
+        Path folder = configPath.getParent();
+        this.sections = List.of(
+                new Section<>(new RecordStore(folder.resolve("favorites.bin")), folder.resolve("favorites.snbt"), "favorites",
+                        config -> config.basics.favorites, entry -> entry.save(new CompoundTag()), FavoriteEntry::readDelegated),
+                new Section<>(new RecordStore(folder.resolve("hidden_favorites.bin")), folder.resolve("hidden_favorites.snbt"), "hiddenFavorites",
+                        config -> config.basics.hiddenFavorites, entry -> entry.save(new CompoundTag()), FavoriteEntry::readDelegated),
+                // The display history is stored by DisplayHistoryManager, this only reads the legacy entries to migrate
+                new Section<>(null, folder.resolve("display_history.snbt"), "displayHistory",
+                        config -> config.basics.displayHistory, Function.identity(), Function.identity())
+        );
+    }
+    
+    /**
+     * Runs the write on the config writer thread, after the writes submitted before it.
+     * A failing write is logged, and does not stop the writes submitted after it.
+     */
+    public static synchronized void submit(Runnable write) {
+        lastWrite = lastWrite.thenRunAsync(() -> {
+            try {
+                write.run();
+            } catch (Throwable throwable) {
+                InternalLogger.getInstance().error("Failed to write config", throwable);
+            }
+        }, WRITER);
+    }
+    
+    /**
+     * Waits for the pending writes to finish.
+     */
+    public static void flush() {
+        CompletableFuture<Void> future;
+        synchronized (SectionedConfigSerializer.class) {
+            future = lastWrite;
+        }
+        future.join();
+    }
+    
+    @Override
+    public void serialize(ConfigObjectImpl config) {
+        String configText = jankson.toJson(config).toJson(true, true);
+        if (!configText.equals(lastConfig)) {
+            lastConfig = configText;
+            submit(() -> writeAtomically(configPath, configText));
+        }
+        for (Section<?> section : sections) {
+            Runnable write = section.snapshot(config);
+            if (write != null) {
+                submit(write);
+            }
+        }
+    }
+    
+    @Override
+    public ConfigObjectImpl deserialize() throws SerializationException {
+        // The stores are read here, they must not be written at the same time
+        flush();
+        ConfigObjectImpl config = delegate.deserialize();
+        JsonObject legacyConfig = null;
+        for (Section<?> section : sections) {
+            if (section.store != null && section.store.exists()) {
+                section.read(config);
+            } else {
+                // Migrate the entries from the previous formats, they are written to the store on the next save
+                if (legacyConfig == null) {
+                    legacyConfig = readLegacyConfig();
+                }
+                section.readLegacy(config, legacyConfig);
+            }
+        }
+        return config;
+    }
+    
+    private JsonObject readLegacyConfig() {
+        if (Files.exists(configPath)) {
+            try {
+                return jankson.load(configPath.toFile());
+            } catch (Exception e) {
+                InternalLogger.getInstance().warn("Failed to read legacy config entries from " + configPath, e);
+            }
+        }
+        return new JsonObject();
+    }
+    
+    @Override
+    public ConfigObjectImpl createDefault() {
+        return delegate.createDefault();
+    }
+    
+    private static void writeAtomically(Path path, String text) {
+        try {
+            Files.createDirectories(path.getParent());
+            Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+                writer.write(text);
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            InternalLogger.getInstance().warn("Failed to save config to " + path, e);
+        }
+    }
+    
+    private static class Section<T> {
+        @Nullable
+        private final RecordStore store;
+        private final Path legacyPath;
+        private final String legacyKey;
+        private final Function<ConfigObjectImpl, List<T>> getter;
+        private final Function<T, CompoundTag> writer;
+        private final Function<CompoundTag, T> reader;
+        @Nullable
+        private List<T> lastSnapshot;
+        
+        private Section(@Nullable RecordStore store, Path legacyPath, String legacyKey, Function<ConfigObjectImpl, List<T>> getter,
+                        Function<T, CompoundTag> writer, Function<CompoundTag, T> reader) {
+            this.store = store;
+            this.legacyPath = legacyPath;
+            this.legacyKey = legacyKey;
+            this.getter = getter;
+            this.writer = writer;
+            this.reader = reader;
+        }
+        
+        /**
+         * Snapshots the entries, returning the write of the snapshot, or {@code null} if they did not change.
+         */
+        @Nullable
+        private Runnable snapshot(ConfigObjectImpl config) {
+            if (store == null) return null;
+            List<T> values = getter.apply(config);
+            if (lastSnapshot != null && lastSnapshot.size() == values.size()) {
+                boolean changed = false;
+                for (int i = 0; i < values.size() && !changed; i++) {
+                    changed = !Objects.equals(lastSnapshot.get(i), values.get(i));
+                }
+                if (!changed) return null;
+            }
+            List<T> snapshot = new ArrayList<>(values);
+            this.lastSnapshot = snapshot;
+            return () -> {
+                List<CompoundTag> tags = new ArrayList<>(snapshot.size());
+                for (T value : snapshot) {
+                    try {
+                        if (value != null) {
+                            tags.add(writer.apply(value));
+                        }
+                    } catch (Exception e) {
+                        InternalLogger.getInstance().warn("Failed to save config entry " + value, e);
+                    }
+                }
+                store.sync(tags);
+            };
+        }
+        
+        private void read(ConfigObjectImpl config) {
+            List<T> values = getter.apply(config);
+            values.clear();
+            for (CompoundTag tag : store.load().values()) {
+                add(values, tag);
+            }
+            this.lastSnapshot = new ArrayList<>(values);
+        }
+        
+        private void readLegacy(ConfigObjectImpl config, JsonObject legacyConfig) {
+            List<T> values = getter.apply(config);
+            values.clear();
+            if (store != null) {
+                store.load();
+            }
+            try {
+                if (Files.exists(legacyPath)) {
+                    for (String line : Files.readAllLines(legacyPath, StandardCharsets.UTF_8)) {
+                        if (!line.isBlank()) {
+                            add(values, TagParser.parseTag(line));
+                        }
+                    }
+                    return;
+                }
+                
+                JsonObject basics = legacyConfig.getObject("basics");
+                JsonArray array = basics == null ? null : basics.get(JsonArray.class, legacyKey);
+                if (array != null) {
+                    for (JsonElement element : array) {
+                        if (element instanceof JsonPrimitive primitive && primitive.getValue() instanceof String line) {
+                            add(values, TagParser.parseTag(line));
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                InternalLogger.getInstance().warn("Failed to read legacy config entries for " + legacyKey, e);
+            }
+            // Leave the last snapshot empty, so the migrated entries are written to the store
+        }
+        
+        private void add(List<T> values, CompoundTag tag) {
+            try {
+                T value = reader.apply(tag);
+                if (value != null) {
+                    values.add(value);
+                }
+            } catch (Exception e) {
+                InternalLogger.getInstance().warn("Failed to read config entry " + tag, e);
+            }
+        }
+    }
+}
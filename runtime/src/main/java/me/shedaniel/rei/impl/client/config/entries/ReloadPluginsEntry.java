@@ -63,7 +63,7 @@ public class ReloadPluginsEntry extends AbstractConfigListEntry<Unit> {
         }
     };
     private AbstractWidget reloadSearchButton = new Button(0, 0, 0, 20, Component.empty(), button -> {
-        Argument.resetCache(true);
+        Argument.resetCache(true, false);
     });
     private List<AbstractWidget> children = ImmutableList.of(reloadPluginsButton, reloadSearchButton);
     
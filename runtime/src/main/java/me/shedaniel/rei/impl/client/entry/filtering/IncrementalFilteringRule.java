@@ -0,0 +1,59 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.shedaniel.rei.impl.client.entry.filtering;
+
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import me.shedaniel.rei.api.client.entry.filtering.FilteringRule;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link FilteringRule} whose results only depend on its inputs, so it doesn't have to be
+ * re-evaluated on refilter if its inputs are unchanged.
+ *
+ * @param <Cache> the type of the cache
+ */
+@Environment(EnvType.CLIENT)
+public interface IncrementalFilteringRule<Cache> extends FilteringRule<Cache> {
+    /**
+     * Returns the inputs of this rule, equal inputs must produce equal results.
+     *
+     * @param cache the prepared cache
+     * @return the inputs of this rule
+     */
+    Object getInputs(Cache cache);
+    
+    /**
+     * Returns the exact hashes of the stacks whose results may differ between the two caches.
+     *
+     * @param previous the previously prepared cache
+     * @param current  the currently prepared cache
+     * @return the hashes of the stacks that have to be re-evaluated, or {@code null} if every stack has to be re-evaluated
+     */
+    @Nullable
+    default LongCollection getChangedHashes(Cache previous, Cache current) {
+        return null;
+    }
+}
@@ -24,6 +24,8 @@
 package me.shedaniel.rei.impl.client.entry.filtering.rules;
 
 import com.google.common.collect.Lists;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongSet;
 import me.shedaniel.rei.api.client.config.ConfigObject;
@@ -32,6 +34,7 @@ import me.shedaniel.rei.api.client.entry.filtering.*;
 import me.shedaniel.rei.api.common.entry.EntryStack;
 import me.shedaniel.rei.api.common.util.CollectionUtils;
 import me.shedaniel.rei.api.common.util.EntryStacks;
+import me.shedaniel.rei.impl.client.entry.filtering.IncrementalFilteringRule;
 import me.shedaniel.rei.impl.client.util.ThreadCreator;
 
 import java.util.Collection;
@@ -39,7 +42,7 @@ import java.util.List;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
-public class ManualFilteringRule implements FilteringRule<LongSet> {
+public class ManualFilteringRule implements IncrementalFilteringRule<LongSet> {
     private static final ExecutorService EXECUTOR_SERVICE = new ThreadCreator("REI-ManualFiltering").asService();
     
     @Override
@@ -88,6 +91,27 @@ public class ManualFilteringRule implements FilteringRule<LongSet> {
         return result;
     }
     
+    @Override
+    public Object getInputs(LongSet cache) {
+        return cache;
+    }
+    
+    @Override
+    public LongCollection getChangedHashes(LongSet previous, LongSet current) {
+        LongSet changed = new LongOpenHashSet();
+        LongIterator iterator = previous.iterator();
+        while (iterator.hasNext()) {
+            long hash = iterator.nextLong();
+            if (!current.contains(hash)) changed.add(hash);
+        }
+        iterator = current.iterator();
+        while (iterator.hasNext()) {
+            long hash = iterator.nextLong();
+            if (!previous.contains(hash)) changed.add(hash);
+        }
+        return changed;
+    }
+    
     private void processList(Collection<EntryStack<?>> stacks, FilteringResult result, boolean async, LongSet filteredStacks) {
         result.hide((async ? stacks.parallelStream() : stacks.stream()).filter(stack -> filteredStacks.contains(EntryStacks.hashExact(stack))).collect(Collectors.toList()));
     }
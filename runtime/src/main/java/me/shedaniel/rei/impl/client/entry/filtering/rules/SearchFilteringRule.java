@@ -30,19 +30,21 @@ import me.shedaniel.rei.api.client.entry.filtering.*;
 import me.shedaniel.rei.api.client.search.SearchFilter;
 import me.shedaniel.rei.api.client.search.SearchProvider;
 import me.shedaniel.rei.api.common.entry.EntryStack;
+import me.shedaniel.rei.impl.client.entry.filtering.IncrementalFilteringRule;
 import me.shedaniel.rei.impl.client.util.ThreadCreator;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.util.StringUtil;
 import net.minecraft.util.Unit;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.function.Supplier;
 
 @Environment(EnvType.CLIENT)
-public class SearchFilteringRule implements FilteringRule<Unit> {
+public class SearchFilteringRule implements IncrementalFilteringRule<Unit> {
     private static final ExecutorService EXECUTOR_SERVICE = new ThreadCreator("REI-SearchFiltering").asService();
     String filterStr;
     Supplier<SearchFilter> filter;
@@ -91,6 +93,11 @@ public class SearchFilteringRule implements FilteringRule<Unit> {
         return result;
     }
     
+    @Override
+    public Object getInputs(Unit cache) {
+        return Arrays.asList(filterStr, show);
+    }
+    
     private void processList(Collection<EntryStack<?>> stacks, List<CompletableFuture<List<EntryStack<?>>>> completableFutures) {
         for (Iterable<EntryStack<?>> partitionStacks : (Iterable<List<EntryStack<?>>>) () -> Iterators.partition(stacks.iterator(), 100)) {
             completableFutures.add(CompletableFuture.supplyAsync(() -> {
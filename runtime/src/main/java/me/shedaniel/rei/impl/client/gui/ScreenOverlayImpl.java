@@ -61,6 +61,7 @@ import me.shedaniel.rei.impl.client.gui.widget.entrylist.ScrolledEntryListWidget
 import me.shedaniel.rei.impl.client.gui.widget.favorites.FavoritesListWidget;
 import me.shedaniel.rei.impl.client.gui.widget.hint.HintsContainerWidget;
 import me.shedaniel.rei.impl.client.gui.widget.search.OverlaySearchField;
+import me.shedaniel.rei.impl.client.registry.screen.ExclusionZonesImpl;
 import me.shedaniel.rei.impl.common.util.RectangleUtils;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.components.events.GuiEventListener;
@@ -221,6 +222,10 @@ public abstract class ScreenOverlayImpl extends ScreenOverlay {
     
     @Override
     public void render(PoseStack matrices, int mouseX, int mouseY, float delta) {
+        if (ScreenRegistry.getInstance().exclusionZones() instanceof ExclusionZonesImpl exclusionZones) {
+            // Query the providers once per frame, layout and hit-testing use the snapshot
+            exclusionZones.updateSnapshot(minecraft.screen);
+        }
         if (shouldReload || !calculateOverlayBounds().equals(bounds)) {
             init();
             getEntryListWidget().updateSearch(REIRuntimeImpl.getSearchField().getText(), true);
@@ -0,0 +1,380 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.shedaniel.rei.impl.client.gui.craftable;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.*;
+import me.shedaniel.rei.api.client.registry.display.DisplayRegistry;
+import me.shedaniel.rei.api.common.category.CategoryIdentifier;
+import me.shedaniel.rei.api.common.display.Display;
+import me.shedaniel.rei.api.common.entry.EntryIngredient;
+import me.shedaniel.rei.api.common.entry.EntryStack;
+import me.shedaniel.rei.api.common.entry.comparison.ComparisonContext;
+import me.shedaniel.rei.api.common.entry.type.VanillaEntryTypes;
+import me.shedaniel.rei.api.common.plugins.PluginManager;
+import me.shedaniel.rei.api.common.transfer.info.MenuInfo;
+import me.shedaniel.rei.api.common.transfer.info.MenuInfoRegistry;
+import me.shedaniel.rei.api.common.transfer.info.MenuSerializationContext;
+import me.shedaniel.rei.api.common.transfer.info.stack.SlotAccessor;
+import me.shedaniel.rei.api.common.util.EntryStacks;
+import me.shedaniel.rei.impl.client.registry.display.DisplayRegistryImpl;
+import me.shedaniel.rei.impl.common.InternalLogger;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.player.LocalPlayer;
+import net.minecraft.world.inventory.AbstractContainerMenu;
+import net.minecraft.world.item.ItemStack;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Incrementally tracks the displays craftable from the materials in the inventory.
+ * <p>
+ * Displays are indexed by the fuzzy hashes of their required items, so only the displays requiring items
+ * whose counts changed in {@link CraftableFilter#getInvStacks()} are re-evaluated.
+ * Displays with a {@link MenuInfo} for the open menu are evaluated against the slots of the menu instead,
+ * and take precedence over the inventory when any of them are craftable. The slot counts are snapshotted
+ * like the inventory whenever the {@link AbstractContainerMenu#getStateId() state} of the menu changes,
+ * so only the displays requiring items whose counts changed in the slots are re-evaluated.
+ */
+@ApiStatus.Internal
+public class CraftableIndex {
+    public static final CraftableIndex INSTANCE = new CraftableIndex();
+    private static final Result EMPTY = new Result(Collections.emptySet(), LongSets.EMPTY_SET);
+    private Display[] displays = new Display[0];
+    private Long2ObjectMap<IntArrayList> required = new Long2ObjectOpenHashMap<>();
+    private final BitSet craftable = new BitSet();
+    private Long2LongMap invStacks = Long2LongMaps.EMPTY_MAP;
+    @Nullable
+    private Object registryKey;
+    private int registrySize = -1;
+    @Nullable
+    private AbstractContainerMenu menu;
+    private final BitSet menuIds = new BitSet();
+    private List<MenuGroup> menuGroups = Collections.emptyList();
+    private final BitSet menuCraftable = new BitSet();
+    private int menuStateId;
+    @Nullable
+    private Long2LongMap menuInvStacks;
+    @Nullable
+    private Result result;
+    @Nullable
+    private Result menuResult;
+    
+    public Collection<EntryStack<?>> getCraftableEntries() {
+        return update().entries();
+    }
+    
+    /**
+     * Returns the {@link EntryStacks#hashExact(EntryStack) exact hashes} of the craftable entries, this must not be mutated.
+     */
+    public LongSet getCraftableHashes() {
+        return update().hashes();
+    }
+    
+    private synchronized Result update() {
+        if (PluginManager.areAnyReloading() || Minecraft.getInstance().player == null) {
+            return EMPTY;
+        }
+        
+        DisplayRegistry registry = DisplayRegistry.getInstance();
+        Object key = registry instanceof DisplayRegistryImpl impl ? impl.getIndex() : registry;
+        if (key != registryKey || registry.displaySize() != registrySize) {
+            rebuild(registry, key);
+        }
+        AbstractContainerMenu menu = Minecraft.getInstance().player.containerMenu;
+        if (menu != this.menu) {
+            resolveMenuInfos(menu);
+        }
+        Long2LongMap invStacks = CraftableFilter.INSTANCE.getInvStacks();
+        if (updateInventory(invStacks)) {
+            result = null;
+        }
+        
+        if (!menuGroups.isEmpty()) {
+            // The inventory is checked as well, as the slots of the player inventory may change without the state of the menu
+            if (menu.getStateId() != menuStateId || invStacks != menuInvStacks) {
+                menuStateId = menu.getStateId();
+                menuInvStacks = invStacks;
+                if (updateMenu()) {
+                    menuResult = null;
+                }
+            }
+            if (!menuCraftable.isEmpty()) {
+                if (menuResult == null) {
+                    menuResult = collect(menuCraftable);
+                }
+                return menuResult;
+            }
+        }
+        
+        if (result == null) {
+            BitSet inventoryCraftable = (BitSet) craftable.clone();
+            inventoryCraftable.andNot(menuIds);
+            result = collect(inventoryCraftable);
+        }
+        return result;
+    }
+    
+    private void rebuild(DisplayRegistry registry, @Nullable Object key) {
+        List<Display> displays = new ArrayList<>(registry.displaySize());
+        for (List<Display> list : registry.getAll().values()) {
+            displays.addAll(list);
+        }
+        this.displays = displays.toArray(new Display[0]);
+        this.required = new Long2ObjectOpenHashMap<>();
+        LongSet hashes = new LongOpenHashSet();
+        for (int id = 0; id < this.displays.length; id++) {
+            hashes.clear();
+            try {
+                for (EntryIngredient ingredient : this.displays[id].getRequiredEntries()) {
+                    for (EntryStack<?> stack : ingredient) {
+                        if (stack.getType() == VanillaEntryTypes.ITEM && hashes.add(EntryStacks.hashFuzzy(stack))) {
+                            required.computeIfAbsent(EntryStacks.hashFuzzy(stack), $ -> new IntArrayList()).add(id);
+                        }
+                    }
+                }
+            } catch (Throwable t) {
+                InternalLogger.getInstance().warn("Error while indexing display for the craftable filter", t);
+            }
+        }
+        this.registryKey = key;
+        this.registrySize = registry.displaySize();
+        this.craftable.clear();
+        // Every display requiring an item in the inventory will be evaluated against the empty inventory
+        this.invStacks = Long2LongMaps.EMPTY_MAP;
+        this.menu = null;
+        this.menuIds.clear();
+        this.menuGroups = Collections.emptyList();
+        this.result = null;
+    }
+    
+    /**
+     * Groups the displays with a {@link MenuInfo} for the menu by their category and menu info,
+     * the slots of a menu info are assumed to be the same for every display of a category.
+     */
+    private void resolveMenuInfos(@Nullable AbstractContainerMenu menu) {
+        this.menu = menu;
+        this.menuIds.clear();
+        this.menuCraftable.clear();
+        this.menuInvStacks = null;
+        this.result = null;
+        this.menuResult = null;
+        if (menu == null) {
+            this.menuGroups = Collections.emptyList();
+            return;
+        }
+        Map<CategoryIdentifier<?>, MenuContext> contexts = new HashMap<>();
+        Map<List<Object>, MenuGroup> groups = new LinkedHashMap<>();
+        for (int id = 0; id < displays.length; id++) {
+            Display display = displays[id];
+            try {
+                MenuContext context = contexts.computeIfAbsent(display.getCategoryIdentifier(), categoryId -> new MenuContext(menu, (CategoryIdentifier<Display>) categoryId));
+                MenuInfo<AbstractContainerMenu, Display> info = MenuInfoRegistry.getInstance().getClient(display, context, menu);
+                if (info != null) {
+                    groups.computeIfAbsent(List.of(context.categoryId(), info.getClass()), $ -> new MenuGroup(info, context)).ids.set(id);
+                    menuIds.set(id);
+                }
+            } catch (Throwable t) {
+                InternalLogger.getInstance().warn("Error while checking if display is craftable", t);
+            }
+        }
+        this.menuGroups = new ArrayList<>(groups.values());
+    }
+    
+    /**
+     * Snapshots the slot counts of every menu group, and re-evaluates the displays requiring the items whose counts changed.
+     *
+     * @return whether any display changed its craftability
+     */
+    private boolean updateMenu() {
+        boolean changed = false;
+        for (MenuGroup group : menuGroups) {
+            Long2LongMap counts;
+            try {
+                counts = group.countSlots(displays[group.ids.nextSetBit(0)]);
+            } catch (Throwable t) {
+                InternalLogger.getInstance().warn("Error while checking if display is craftable", t);
+                continue;
+            }
+            BitSet affected = new BitSet();
+            markChanged(group.counts, counts, affected);
+            affected.and(group.ids);
+            group.counts = counts;
+            for (int id = affected.nextSetBit(0); id >= 0; id = affected.nextSetBit(id + 1)) {
+                boolean isCraftable = isCraftable(displays[id], counts);
+                if (menuCraftable.get(id) != isCraftable) {
+                    menuCraftable.set(id, isCraftable);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Re-evaluates the displays requiring the items whose counts changed.
+     *
+     * @return whether any display changed its craftability
+     */
+    private boolean updateInventory(Long2LongMap invStacks) {
+        Long2LongMap previous = this.invStacks;
+        if (invStacks == previous) return false;
+        this.invStacks = invStacks;
+        BitSet affected = new BitSet();
+        markChanged(previous, invStacks, affected);
+        
+        boolean changed = false;
+        for (int id = affected.nextSetBit(0); id >= 0; id = affected.nextSetBit(id + 1)) {
+            boolean isCraftable = isCraftable(displays[id], invStacks);
+            if (craftable.get(id) != isCraftable) {
+                craftable.set(id, isCraftable);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Marks the displays requiring the items whose counts differ between the snapshots.
+     */
+    private void markChanged(Long2LongMap previous, Long2LongMap current, BitSet affected) {
+        for (Long2LongMap.Entry entry : current.long2LongEntrySet()) {
+            if (previous.get(entry.getLongKey()) != entry.getLongValue()) {
+                markAffected(entry.getLongKey(), affected);
+            }
+        }
+        for (Long2LongMap.Entry entry : previous.long2LongEntrySet()) {
+            if (!current.containsKey(entry.getLongKey())) {
+                markAffected(entry.getLongKey(), affected);
+            }
+        }
+    }
+    
+    private void markAffected(long hash, BitSet affected) {
+        IntArrayList ids = required.get(hash);
+        if (ids != null) {
+            for (int i = 0; i < ids.size(); i++) {
+                affected.set(ids.getInt(i));
+            }
+        }
+    }
+    
+    private static boolean isCraftable(Display display, Long2LongMap available) {
+        try {
+            Long2LongOpenHashMap consumed = new Long2LongOpenHashMap();
+            int slotsCraftable = 0;
+            boolean containsNonEmpty = false;
+            List<EntryIngredient> requiredInput = display.getRequiredEntries();
+            for (EntryIngredient slot : requiredInput) {
+                if (slot.isEmpty()) {
+                    slotsCraftable++;
+                    continue;
+                }
+                for (EntryStack<?> slotPossible : slot) {
+                    if (slotPossible.getType() != VanillaEntryTypes.ITEM) continue;
+                    ItemStack stack = slotPossible.castValue();
+                    long hashFuzzy = EntryStacks.hashFuzzy(slotPossible);
+                    long availableAmount = available.get(hashFuzzy) - consumed.get(hashFuzzy);
+                    if (availableAmount >= stack.getCount()) {
+                        consumed.addTo(hashFuzzy, stack.getCount());
+                        containsNonEmpty = true;
+                        slotsCraftable++;
+                        break;
+                    }
+                }
+            }
+            return slotsCraftable == requiredInput.size() && containsNonEmpty;
+        } catch (Throwable t) {
+            InternalLogger.getInstance().warn("Error while checking if display is craftable", t);
+            return false;
+        }
+    }
+    
+    private Result collect(BitSet ids) {
+        Set<EntryStack<?>> entries = new HashSet<>();
+        LongSet hashes = new LongOpenHashSet();
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            for (EntryIngredient ingredient : displays[id].getOutputEntries()) {
+                for (EntryStack<?> stack : ingredient) {
+                    if (hashes.add(EntryStacks.hashExact(stack))) {
+                        entries.add(stack);
+                    }
+                }
+            }
+        }
+        return new Result(entries, hashes);
+    }
+    
+    private record Result(Collection<EntryStack<?>> entries, LongSet hashes) {}
+    
+    private static class MenuGroup {
+        private final MenuInfo<AbstractContainerMenu, Display> info;
+        private final MenuContext context;
+        private final BitSet ids = new BitSet();
+        private Long2LongMap counts = Long2LongMaps.EMPTY_MAP;
+        
+        private MenuGroup(MenuInfo<AbstractContainerMenu, Display> info, MenuContext context) {
+            this.info = info;
+            this.context = context;
+        }
+        
+        private Long2LongMap countSlots(Display display) {
+            Long2LongOpenHashMap counts = new Long2LongOpenHashMap();
+            for (SlotAccessor slot : info.getInputSlots(context.withDisplay(display))) {
+                count(slot, counts);
+            }
+            for (SlotAccessor slot : info.getInventorySlots(context.withDisplay(display))) {
+                count(slot, counts);
+            }
+            return counts;
+        }
+        
+        private static void count(SlotAccessor slot, Long2LongOpenHashMap counts) {
+            ItemStack stack = slot.getItemStack();
+            if (!stack.isEmpty()) {
+                counts.addTo(VanillaEntryTypes.ITEM.getDefinition().hash(null, stack, ComparisonContext.FUZZY), Math.max(0, stack.getCount()));
+            }
+        }
+    }
+    
+    private record MenuContext(AbstractContainerMenu menu, CategoryIdentifier<Display> categoryId)
+            implements MenuSerializationContext<AbstractContainerMenu, LocalPlayer, Display> {
+        @Override
+        public AbstractContainerMenu getMenu() {
+            return menu;
+        }
+        
+        @Override
+        public LocalPlayer getPlayerEntity() {
+            return Minecraft.getInstance().player;
+        }
+        
+        @Override
+        public CategoryIdentifier<Display> getCategoryIdentifier() {
+            return categoryId;
+        }
+    }
+}
@@ -27,10 +27,15 @@ import com.mojang.blaze3d.vertex.PoseStack;
 import com.mojang.datafixers.util.Pair;
 import me.shedaniel.clothconfig2.gui.widget.DynamicElementListWidget;
 import me.shedaniel.rei.RoughlyEnoughItemsCore;
+import me.shedaniel.rei.api.client.registry.display.DisplayRegistry;
 import me.shedaniel.rei.api.common.plugins.REIPlugin;
 import me.shedaniel.rei.api.common.plugins.REIPluginProvider;
 import me.shedaniel.rei.impl.client.gui.performance.entry.PerformanceEntryImpl;
+import me.shedaniel.rei.impl.client.gui.performance.entry.PerformanceValueEntry;
 import me.shedaniel.rei.impl.client.gui.performance.entry.SubCategoryListEntry;
+import me.shedaniel.rei.impl.client.registry.display.DisplayRegistryImpl;
+import me.shedaniel.rei.impl.client.registry.display.DisplayVisibilityCache;
+import me.shedaniel.rei.impl.client.search.SearchScheduler;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.Minecraft;
@@ -162,9 +167,33 @@ public class PerformanceScreen extends Screen {
             list.addItem(new SubCategoryListEntry(Component.literal(stage), (List<PerformanceScreen.PerformanceEntry>) (List<? extends PerformanceScreen.PerformanceEntry>) entries, Math.max(inner.totalNano(), separateTime), false));
         });
         list.children().add(0, new PerformanceEntryImpl(Component.literal("Total Load Time"), totalTime[0]));
+        addSearchMetrics();
+        addDisplayVisibilityMetrics();
         addWidget(list);
     }
     
+    private void addSearchMetrics() {
+        SearchScheduler.Metrics metrics = SearchScheduler.getInstance().getMetrics();
+        List<PerformanceScreen.PerformanceEntry> entries = new ArrayList<>();
+        entries.add(new PerformanceValueEntry(Component.literal("Parallelism"), Component.literal(metrics.activeThreads() + " / " + metrics.parallelism())));
+        entries.add(new PerformanceValueEntry(Component.literal("Queued Tasks"), Component.literal(String.valueOf(metrics.queuedTasks()))));
+        entries.add(new PerformanceValueEntry(Component.literal("Completed Tasks"), Component.literal(String.valueOf(metrics.completedTasks()))));
+        entries.add(new PerformanceValueEntry(Component.literal("Cancelled Tasks"), Component.literal(String.valueOf(metrics.cancelledTasks()))));
+        entries.add(new PerformanceEntryImpl(Component.literal("Wasted CPU Time"), metrics.wastedCpuNanos()));
+        list.addItem(new SubCategoryListEntry(Component.literal("Search Scheduler"), entries, metrics.cpuNanos(), false));
+    }
+    
+    private void addDisplayVisibilityMetrics() {
+        DisplayVisibilityCache.Metrics metrics = ((DisplayRegistryImpl) DisplayRegistry.getInstance()).getVisibilityMetrics();
+        List<PerformanceScreen.PerformanceEntry> entries = new ArrayList<>();
+        entries.add(new PerformanceValueEntry(Component.literal("Hit Rate"), Component.literal(String.format(Locale.ROOT, "%.1f%%", metrics.hitRate() * 100))));
+        entries.add(new PerformanceValueEntry(Component.literal("Hits"), Component.literal(String.valueOf(metrics.hits()))));
+        entries.add(new PerformanceValueEntry(Component.literal("Misses"), Component.literal(String.valueOf(metrics.misses()))));
+        entries.add(new PerformanceValueEntry(Component.literal("Cached Displays"), Component.literal(String.valueOf(metrics.size()))));
+        entries.add(new PerformanceValueEntry(Component.literal("Epoch"), Component.literal(String.valueOf(metrics.epoch()))));
+        list.addItem(new SubCategoryListEntry(Component.literal("Display Visibility"), entries, metrics.missNanos(), false));
+    }
+    
     @Override
     public void render(PoseStack poses, int mouseX, int mouseY, float delta) {
         renderDirtBackground(0);
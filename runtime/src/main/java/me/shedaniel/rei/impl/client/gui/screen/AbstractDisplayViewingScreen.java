@@ -53,6 +53,7 @@ import me.shedaniel.rei.impl.client.REIRuntimeImpl;
 import me.shedaniel.rei.impl.client.gui.widget.EntryWidget;
 import me.shedaniel.rei.impl.client.gui.widget.TabContainerWidget;
 import me.shedaniel.rei.impl.client.gui.widget.entrylist.EntryListWidget;
+import me.shedaniel.rei.impl.client.view.AutoCraftingOrderedList;
 import me.shedaniel.rei.impl.display.DisplaySpec;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.Minecraft;
@@ -72,10 +73,15 @@ import net.minecraft.world.item.ItemStack;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 public abstract class AbstractDisplayViewingScreen extends Screen implements DisplayScreen {
+    /**
+     * The time spent every tick evaluating the auto crafting results of the displays not shown yet.
+     */
+    private static final long AUTO_CRAFTING_BUDGET = TimeUnit.MILLISECONDS.toNanos(2);
     protected final Map<DisplayCategory<?>, List<DisplaySpec>> categoryMap;
     protected final List<DisplayCategory<?>> categories;
     protected final TabContainerWidget tabs = new TabContainerWidget();
@@ -114,6 +120,35 @@ public abstract class AbstractDisplayViewingScreen extends Screen implements Dis
         }
     }
     
+    @Override
+    public void tick() {
+        super.tick();
+        List<DisplaySpec> displays = categoryMap.get(getCurrentCategory());
+        if (displays instanceof AutoCraftingOrderedList orderedList && orderedList.update(getShownDisplaysEnd(), AUTO_CRAFTING_BUDGET)) {
+            onDisplaysReordered();
+        }
+    }
+    
+    /**
+     * Evaluates and orders the displays of the current category from {@code from} to the {@link #getShownDisplaysEnd() shown end}
+     * before they are laid out, as the displays that are shown are never moved afterwards.
+     */
+    protected void prepareShownDisplays(int from) {
+        List<DisplaySpec> displays = categoryMap.get(getCurrentCategory());
+        if (displays instanceof AutoCraftingOrderedList orderedList) {
+            orderedList.prepare(from, getShownDisplaysEnd(), AUTO_CRAFTING_BUDGET);
+        }
+    }
+    
+    /**
+     * Returns the index after the last display of the current category that is shown,
+     * the displays after it may still be reordered.
+     */
+    protected abstract int getShownDisplaysEnd();
+    
+    protected void onDisplaysReordered() {
+    }
+    
     @Override
     public void recalculateCategoryPage() {
         this.categoryPages = -1;
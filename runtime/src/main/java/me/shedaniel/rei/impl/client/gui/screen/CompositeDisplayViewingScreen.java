@@ -66,6 +66,7 @@ public class CompositeDisplayViewingScreen extends AbstractDisplayViewingScreen
     private final List<DisplayRenderer> displayRenderers = Lists.newArrayList();
     public Rectangle scrollListBounds;
     private int selectedRecipeIndex = 0;
+    private boolean displaysPrepared = false;
     private final ScrollingContainer scrolling = new ScrollingContainer() {
         @Override
         public Rectangle getBounds() {
@@ -93,6 +94,7 @@ public class CompositeDisplayViewingScreen extends AbstractDisplayViewingScreen
     public void recalculateCategoryPage() {
         super.recalculateCategoryPage();
         this.selectedRecipeIndex = 0;
+        this.displaysPrepared = false;
     }
     
     @Override
@@ -105,6 +107,11 @@ public class CompositeDisplayViewingScreen extends AbstractDisplayViewingScreen
         int largestWidth = width - 100;
         int largestHeight = height - 40;
         DisplayCategory<Display> category = getCurrentCategory();
+        if (!displaysPrepared) {
+            // Only before the first display is shown, the selected display must not move when it is clicked
+            prepareShownDisplays(0);
+            displaysPrepared = true;
+        }
         DisplaySpec display = categoryMap.get(category).get(selectedRecipeIndex);
         int guiWidth = Mth.clamp(category.getDisplayWidth(display.provideInternalDisplay()) + 30, 0, largestWidth) + 100;
         int guiHeight = Mth.clamp(category.getDisplayHeight() + 40, 166, largestHeight);
@@ -268,6 +275,17 @@ public class CompositeDisplayViewingScreen extends AbstractDisplayViewingScreen
         return super.mouseScrolled(mouseX, mouseY, amount);
     }
     
+    @Override
+    protected int getShownDisplaysEnd() {
+        return selectedRecipeIndex + 1;
+    }
+    
+    @Override
+    protected void onDisplaysReordered() {
+        // Every display has a button, rebuild them in the new order
+        init();
+    }
+    
     @Override
     public void render(PoseStack matrices, int mouseX, int mouseY, float delta) {
         if (ConfigObject.getInstance().isCompositeScrollBarPermanent()) {
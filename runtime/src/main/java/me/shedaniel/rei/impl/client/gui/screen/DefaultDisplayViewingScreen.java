@@ -164,6 +164,7 @@ public class DefaultDisplayViewingScreen extends AbstractDisplayViewingScreen {
         this.widgets.addAll(this.tabs.widgets());
         
         this.page = Mth.clamp(page, 0, getCurrentTotalPages() - 1);
+        prepareShownDisplays(page * (getRecipesPerPage() + 1));
         this.widgets.add(categoryBack = Widgets.createButton(new Rectangle(bounds.getCenterX() - guiWidth / 2 + 5, bounds.getY() + 5, 12, 12), Component.empty())
                 .onClick(button -> previousCategory()).tooltipLine(Component.translatable("text.rei.previous_category")));
         this.widgets.add(Widgets.createClickableLabel(new Point(bounds.getCenterX(), bounds.getY() + 7), getCurrentCategory().getTitle(), clickableLabelWidget -> {
@@ -313,6 +314,11 @@ public class DefaultDisplayViewingScreen extends AbstractDisplayViewingScreen {
         return page;
     }
     
+    @Override
+    protected int getShownDisplaysEnd() {
+        return (page + 1) * (getRecipesPerPage() + 1);
+    }
+    
     public int getCategoryPage() {
         return categoryPages;
     }
@@ -0,0 +1,81 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.shedaniel.rei.impl.client.gui.widget;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import me.shedaniel.rei.api.client.REIRuntime;
+import me.shedaniel.rei.api.common.display.Display;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.screens.inventory.AbstractContainerScreen;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caches the auto crafting results of displays by identity, used for ordering the displays.
+ * The results are dropped once the menu or the inventory of the player changes.
+ */
+public final class AutoCraftingCache {
+    private static final Cache<Display, AutoCraftingEvaluator.AutoCraftingResult> RESULTS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+    private static long fingerprint;
+    
+    private AutoCraftingCache() {}
+    
+    @Nullable
+    public static AutoCraftingEvaluator.AutoCraftingResult getIfPresent(Display display) {
+        validate();
+        return RESULTS.getIfPresent(display);
+    }
+    
+    public static AutoCraftingEvaluator.AutoCraftingResult get(Display display) {
+        validate();
+        AutoCraftingEvaluator.AutoCraftingResult result = RESULTS.getIfPresent(display);
+        if (result == null) {
+            result = AutoCraftingEvaluator.evaluateAutoCrafting(false, false, display, null);
+            RESULTS.put(display, result);
+        }
+        return result;
+    }
+    
+    private static void validate() {
+        long fingerprint = computeFingerprint();
+        if (fingerprint != AutoCraftingCache.fingerprint) {
+            AutoCraftingCache.fingerprint = fingerprint;
+            RESULTS.invalidateAll();
+        }
+    }
+    
+    private static long computeFingerprint() {
+        AbstractContainerScreen<?> containerScreen = REIRuntime.getInstance().getPreviousContainerScreen();
+        if (containerScreen == null) return 0;
+        long fingerprint = System.identityHashCode(containerScreen.getMenu());
+        fingerprint = fingerprint * 31 + containerScreen.getMenu().getStateId();
+        if (Minecraft.getInstance().player != null) {
+            fingerprint = fingerprint * 31 + Minecraft.getInstance().player.getInventory().getTimesChanged();
+        }
+        return fingerprint;
+    }
+}
@@ -24,17 +24,16 @@
 package me.shedaniel.rei.impl.client.gui.widget.entrylist;
 
 import com.google.common.base.Stopwatch;
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongSet;
 import me.shedaniel.rei.api.client.config.ConfigManager;
 import me.shedaniel.rei.api.client.config.ConfigObject;
 import me.shedaniel.rei.api.client.gui.config.EntryPanelOrdering;
 import me.shedaniel.rei.api.client.registry.entry.CollapsibleEntryRegistry;
 import me.shedaniel.rei.api.client.registry.entry.EntryRegistry;
-import me.shedaniel.rei.api.client.view.Views;
 import me.shedaniel.rei.api.common.entry.EntryStack;
 import me.shedaniel.rei.api.common.entry.type.VanillaEntryTypes;
 import me.shedaniel.rei.api.common.util.EntryStacks;
+import me.shedaniel.rei.impl.client.gui.craftable.CraftableIndex;
 import me.shedaniel.rei.impl.client.search.AsyncSearchManager;
 import me.shedaniel.rei.impl.common.InternalLogger;
 import me.shedaniel.rei.impl.common.entry.type.collapsed.CollapsedStack;
@@ -64,12 +63,7 @@ public class EntryListSearchManager {
     
     private AsyncSearchManager searchManager = new AsyncSearchManager(EntryRegistry.getInstance()::getPreFilteredList, () -> {
         boolean checkCraftable = ConfigManager.getInstance().isCraftableOnlyEnabled();
-        LongSet workingItems = checkCraftable ? new LongOpenHashSet() : null;
-        if (checkCraftable) {
-            for (EntryStack<?> stack : Views.getInstance().findCraftableEntriesByMaterials()) {
-                workingItems.add(EntryStacks.hashExact(stack));
-            }
-        }
+        LongSet workingItems = checkCraftable ? CraftableIndex.INSTANCE.getCraftableHashes() : null;
         return checkCraftable ? stack -> workingItems.contains(EntryStacks.hashExact(stack)) : stack -> true;
     }, EntryStack::normalize);
     
@@ -78,6 +72,8 @@ public class EntryListSearchManager {
         if (ignoreLastSearch) searchManager.markDirty();
         searchManager.updateFilter(searchTerm);
         if (searchManager.isDirty()) {
+            // The number of stacks applied by this search so far, only accessed on the main thread
+            int[] applied = {-1};
             searchManager.getAsync((list, filter) -> {
                 if (!filter.getFilter().equals(searchTerm)) return;
                 if (searchManager.filter() == null || searchManager.filter() != filter) return;
@@ -88,12 +84,35 @@ public class EntryListSearchManager {
                 
                 Minecraft.getInstance().submit(() -> {
                     if (searchManager.filter() == null || searchManager.filter() != filter) return;
+                    applied[0] = Integer.MAX_VALUE;
                     update.accept(finalList);
                 });
-            });
+            }, createPartialResults(searchTerm, applied, update));
         }
     }
     
+    /**
+     * Streams the matches found so far to the entry list, only the registry ordering can be streamed,
+     * as the first entries of the other orderings are only known once every stack is searched.
+     */
+    @Nullable
+    private AsyncSearchManager.PartialResults createPartialResults(String searchTerm, int[] applied, Consumer<List</*EntryStack<?> | CollapsedStack*/ Object>> update) {
+        if (ConfigObject.getInstance().getItemListOrdering() != EntryPanelOrdering.REGISTRY) return null;
+        return new AsyncSearchManager.PartialResults((list, filter) -> {
+            if (!filter.getFilter().equals(searchTerm)) return;
+            if (searchManager.filter() == null || searchManager.filter() != filter) return;
+            List</*EntryStack<?> | CollapsedStack*/ Object> partialList = collapse(copyAndOrder(list), () -> searchManager.filter() != null && searchManager.filter() == filter);
+            
+            Minecraft.getInstance().submit(() -> {
+                if (searchManager.filter() == null || searchManager.filter() != filter) return;
+                // Partial results may be submitted out of order, and must never replace the complete result
+                if (list.size() <= applied[0]) return;
+                applied[0] = list.size();
+                update.accept(partialList);
+            });
+        }, !ConfigObject.getInstance().isItemListAscending());
+    }
+    
     private List<EntryStack<?>> copyAndOrder(List<EntryStack<?>> list) {
         list = new ArrayList<>(list);
         EntryPanelOrdering ordering = ConfigObject.getInstance().getItemListOrdering();
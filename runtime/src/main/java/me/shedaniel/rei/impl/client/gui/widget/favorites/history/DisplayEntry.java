@@ -54,7 +54,10 @@ import java.util.function.Supplier;
 public class DisplayEntry extends WidgetWithBounds {
     private final LazyResettable<List<Widget>> widgets = new LazyResettable<>(this::setupWidgets);
     private final DisplayHistoryWidget parent;
-    private final Display display;
+    @Nullable
+    private Supplier<Display> displaySupplier;
+    @Nullable
+    private Display display;
     private final Dimension size = new Dimension(1, 1);
     private final Supplier<AutoCraftingEvaluator.AutoCraftingResult> autoCraftingResult =
             Suppliers.memoizeWithExpiration(this::evaluateAutoCrafting, 1000, TimeUnit.MILLISECONDS);
@@ -66,7 +69,16 @@ public class DisplayEntry extends WidgetWithBounds {
     private UUID uuid = UUID.randomUUID();
     
     public DisplayEntry(DisplayHistoryWidget parent, Display display, @Nullable Rectangle initialBounds) {
-        this.display = display;
+        this(parent, () -> display, initialBounds);
+        getDisplay();
+    }
+    
+    /**
+     * @param display the supplier of the display, only called once the display is needed,
+     *                returning {@code null} if the display cannot be read
+     */
+    public DisplayEntry(DisplayHistoryWidget parent, Supplier<Display> display, @Nullable Rectangle initialBounds) {
+        this.displaySupplier = display;
         this.parent = parent;
         this.hasInitialBounds = initialBounds != null;
         if (this.hasInitialBounds) {
@@ -78,8 +90,9 @@ public class DisplayEntry extends WidgetWithBounds {
     }
     
     private AutoCraftingEvaluator.AutoCraftingResult evaluateAutoCrafting() {
-        if (this.display == null) return new AutoCraftingEvaluator.AutoCraftingResult();
-        return AutoCraftingEvaluator.evaluateAutoCrafting(false, false, this.display, this.display::provideInternalDisplayIds);
+        Display display = getDisplay();
+        if (display == null) return new AutoCraftingEvaluator.AutoCraftingResult();
+        return AutoCraftingEvaluator.evaluateAutoCrafting(false, false, display, display::provideInternalDisplayIds);
     }
     
     public UUID getUuid() {
@@ -95,6 +108,7 @@ public class DisplayEntry extends WidgetWithBounds {
     }
     
     private List<Widget> setupWidgets() {
+        Display display = getDisplay();
         Rectangle parentBounds = parent.getBounds();
         CategoryRegistry.CategoryConfiguration<Display> configuration = CategoryRegistry.getInstance().get((CategoryIdentifier<Display>) display.getCategoryIdentifier());
         DisplayCategory<Display> category = configuration.getCategory();
@@ -204,7 +218,7 @@ public class DisplayEntry extends WidgetWithBounds {
                     poses.translate(xOffset(), yOffset(), 0);
                     poses.scale(xScale(), yScale(), 1.0F);
                     
-                    result.renderer.render(poses, mouseX, mouseY, delta, widgets.get(), getBounds(), display);
+                    result.renderer.render(poses, mouseX, mouseY, delta, widgets.get(), getBounds(), getDisplay());
                     poses.popPose();
                 }
             } else {
@@ -235,6 +249,7 @@ public class DisplayEntry extends WidgetWithBounds {
                 }
             }
             
+            Display display = getDisplay();
             if (button == 0 && plusButton.containsMouse(mouseX + xOffset, mouseY)) {
                 AutoCraftingEvaluator.evaluateAutoCrafting(true, Screen.hasShiftDown(), display, display::provideInternalDisplayIds);
                 Widgets.produceClickSound();
@@ -321,7 +336,19 @@ public class DisplayEntry extends WidgetWithBounds {
         return widgets.get();
     }
     
+    @Nullable
     public Display getDisplay() {
+        if (displaySupplier != null) {
+            display = displaySupplier.get();
+            displaySupplier = null;
+        }
         return display;
     }
+    
+    /**
+     * Returns whether the display is read, without reading it.
+     */
+    public boolean isDisplayLoaded() {
+        return displaySupplier == null && display != null;
+    }
 }
@@ -23,7 +23,7 @@
 
 package me.shedaniel.rei.impl.client.gui.widget.favorites.history;
 
-import com.google.common.collect.Iterables;
+import dev.architectury.platform.Platform;
 import me.shedaniel.math.Rectangle;
 import me.shedaniel.rei.api.client.registry.category.CategoryRegistry;
 import me.shedaniel.rei.api.common.category.CategoryIdentifier;
@@ -31,6 +31,8 @@ import me.shedaniel.rei.api.common.display.Display;
 import me.shedaniel.rei.api.common.display.DisplaySerializerRegistry;
 import me.shedaniel.rei.api.common.plugins.PluginManager;
 import me.shedaniel.rei.impl.client.config.ConfigManagerImpl;
+import me.shedaniel.rei.impl.client.config.RecordStore;
+import me.shedaniel.rei.impl.client.config.SectionedConfigSerializer;
 import me.shedaniel.rei.impl.common.InternalLogger;
 import net.minecraft.Util;
 import net.minecraft.nbt.CompoundTag;
@@ -40,7 +42,19 @@ import java.util.*;
 
 public class DisplayHistoryManager {
     public static final DisplayHistoryManager INSTANCE = new DisplayHistoryManager();
+    private static final int MAX_ENTRIES = 9;
+    /**
+     * The history records, oldest first. Records of displays without a serializer are only kept in memory.
+     * The store is only touched on the config writer thread after it is loaded.
+     */
+    private final RecordStore store = new RecordStore(Platform.getConfigFolder().resolve("roughlyenoughitems/display_history.bin"));
+    @Nullable
+    private LinkedHashMap<UUID, CompoundTag> records;
     private Map<String, DisplayEntry> entries = new LinkedHashMap<>();
+    /**
+     * The entries hidden for this session, their records are kept as the displays may be readable next session.
+     */
+    private final Set<UUID> hiddenEntries = new HashSet<>();
     private long lastCheckTime = -1;
     
     public Collection<DisplayEntry> getEntries(DisplayHistoryWidget parent) {
@@ -52,24 +66,49 @@ public class DisplayHistoryManager {
         return Collections.unmodifiableCollection(entries.values());
     }
     
+    private LinkedHashMap<UUID, CompoundTag> getRecords() {
+        if (records == null) {
+            SectionedConfigSerializer.flush();
+            boolean migrate = !store.exists();
+            records = new LinkedHashMap<>(store.load());
+            if (migrate) {
+                // The legacy history is newest first
+                List<CompoundTag> displayHistory = ConfigManagerImpl.getInstance().getConfig().getDisplayHistory();
+                for (int i = displayHistory.size() - 1; i >= 0; i--) {
+                    CompoundTag tag = displayHistory.get(i);
+                    if (tag.getBoolean("DisplayHistoryContains")) {
+                        try {
+                            putRecord(UUID.fromString(tag.getString("DisplayHistoryUUID")), tag);
+                        } catch (IllegalArgumentException e) {
+                            InternalLogger.getInstance().warn("Failed to migrate display history entry", e);
+                        }
+                    }
+                }
+                displayHistory.clear();
+            }
+        }
+        return records;
+    }
+    
     private void updateEntries(DisplayHistoryWidget parent) {
-        List<CompoundTag> displayHistory = ConfigManagerImpl.getInstance().getConfig().getDisplayHistory();
         Map<String, DisplayEntry> copy = new LinkedHashMap<>(entries);
         entries.clear();
-        for (CompoundTag tag : displayHistory) {
-            String uuid = tag.getString("DisplayHistoryUUID");
-            
+        List<Map.Entry<UUID, CompoundTag>> newestFirst = new ArrayList<>(getRecords().entrySet());
+        Collections.reverse(newestFirst);
+        for (Map.Entry<UUID, CompoundTag> record : newestFirst) {
+            String uuid = record.getKey().toString();
             DisplayEntry entry = copy.get(uuid);
             if (entry != null) {
-                entries.put(entry.getUuid().toString(), entry);
-            } else if (tag.getBoolean("DisplayHistoryContains")) {
+                entries.put(uuid, entry);
+            } else if (record.getValue().getBoolean("DisplayHistoryContains") && !hiddenEntries.contains(record.getKey())) {
                 try {
+                    CompoundTag tag = record.getValue();
                     CategoryIdentifier<?> categoryIdentifier = CategoryIdentifier.of(tag.getString("DisplayHistoryCategory"));
                     if (CategoryRegistry.getInstance().tryGet(categoryIdentifier).isPresent()) {
-                        Display display = DisplaySerializerRegistry.getInstance().read(categoryIdentifier, tag.getCompound("DisplayHistoryData"));
-                        DisplayEntry newEntry = new DisplayEntry(parent, display, null);
-                        newEntry.setUuid(UUID.fromString(uuid));
-                        entries.put(newEntry.getUuid().toString(), newEntry);
+                        // The display is only read once the entry is visible
+                        DisplayEntry newEntry = new DisplayEntry(parent, () -> readDisplay(categoryIdentifier, tag), null);
+                        newEntry.setUuid(record.getKey());
+                        entries.put(uuid, newEntry);
                     }
                 } catch (Exception e) {
                     InternalLogger.getInstance().warn("Failed to read display history entry", e);
@@ -78,20 +117,35 @@ public class DisplayHistoryManager {
         }
     }
     
+    @Nullable
+    private static Display readDisplay(CategoryIdentifier<?> categoryIdentifier, CompoundTag tag) {
+        try {
+            return DisplaySerializerRegistry.getInstance().read(categoryIdentifier, tag.getCompound("DisplayHistoryData"));
+        } catch (Exception e) {
+            InternalLogger.getInstance().warn("Failed to read display history entry", e);
+            return null;
+        }
+    }
+    
     public void removeEntry(DisplayEntry entry) {
         this.entries.remove(entry.getUuid().toString());
-        List<CompoundTag> displayHistory = ConfigManagerImpl.getInstance().getConfig().getDisplayHistory();
-        displayHistory.removeIf(tag -> tag.getString("DisplayHistoryUUID").equals(entry.getUuid().toString()));
-        save();
+        removeRecord(entry.getUuid());
+    }
+    
+    /**
+     * Hides the entry without removing its record, for entries whose display cannot be read.
+     */
+    public void hideEntry(DisplayEntry entry) {
+        this.entries.remove(entry.getUuid().toString());
+        this.hiddenEntries.add(entry.getUuid());
     }
     
     public void addEntry(DisplayHistoryWidget parent, @Nullable Rectangle bounds, Display display) {
-        List<CompoundTag> displayHistory = ConfigManagerImpl.getInstance().getConfig().getDisplayHistory();
         Iterator<DisplayEntry> iterator = this.entries.values().iterator();
         while (iterator.hasNext()) {
             DisplayEntry entry = iterator.next();
-            if (entry.getDisplay() == display) {
-                displayHistory.removeIf(tag -> tag.getString("DisplayHistoryUUID").equals(entry.getUuid().toString()));
+            if (entry.isDisplayLoaded() && entry.getDisplay() == display) {
+                removeRecord(entry.getUuid());
                 iterator.remove();
             }
         }
@@ -100,43 +154,37 @@ public class DisplayHistoryManager {
         copy.put(newEntry.getUuid().toString(), newEntry);
         copy.putAll(this.entries);
         this.entries = copy;
-        while (entries.size() >= 10) {
-            DisplayEntry entry = Iterables.get(entries.values(), entries.size() - 1);
-            displayHistory.removeIf(tag -> tag.getString("DisplayHistoryUUID").equals(entry.getUuid().toString()));
-            this.entries.remove(entry.getUuid().toString());
+        while (getRecords().size() >= MAX_ENTRIES) {
+            UUID oldest = getRecords().keySet().iterator().next();
+            this.entries.remove(oldest.toString());
+            removeRecord(oldest);
         }
         
         CompoundTag compoundTag = new CompoundTag();
         compoundTag.putBoolean("DisplayHistoryContains", false);
         compoundTag.putString("DisplayHistoryUUID", newEntry.getUuid().toString());
         compoundTag.putString("DisplayHistoryCategory", display.getCategoryIdentifier().toString());
-        displayHistory.add(0, compoundTag);
-        
-        save();
+        if (DisplaySerializerRegistry.getInstance().hasSerializer(display.getCategoryIdentifier())) {
+            try {
+                compoundTag.put("DisplayHistoryData", DisplaySerializerRegistry.getInstance().save(display, new CompoundTag()));
+                compoundTag.putBoolean("DisplayHistoryContains", true);
+            } catch (Exception e) {
+                InternalLogger.getInstance().warn("Failed to save display history entry", e);
+            }
+        }
+        putRecord(newEntry.getUuid(), compoundTag);
     }
     
-    private void save() {
-        List<CompoundTag> displayHistory = ConfigManagerImpl.getInstance().getConfig().getDisplayHistory();
-        for (CompoundTag compoundTag : displayHistory) {
-            String uuid = compoundTag.getString("DisplayHistoryUUID");
-            DisplayEntry entry = entries.get(uuid);
-            
-            if (entry != null) {
-                compoundTag.putBoolean("DisplayHistoryContains", false);
-                Display display = entry.getDisplay();
-                boolean hasSerializer = DisplaySerializerRegistry.getInstance().hasSerializer(display.getCategoryIdentifier());
-                
-                if (hasSerializer) {
-                    try {
-                        compoundTag.put("DisplayHistoryData", DisplaySerializerRegistry.getInstance().save(display, new CompoundTag()));
-                        compoundTag.putBoolean("DisplayHistoryContains", true);
-                    } catch (Exception e) {
-                        InternalLogger.getInstance().warn("Failed to save display history entry", e);
-                    }
-                }
-            }
+    private void putRecord(UUID uuid, CompoundTag tag) {
+        getRecords().put(uuid, tag);
+        if (tag.getBoolean("DisplayHistoryContains")) {
+            SectionedConfigSerializer.submit(() -> store.put(uuid, tag));
+        }
+    }
+    
+    private void removeRecord(UUID uuid) {
+        if (getRecords().remove(uuid) != null) {
+            SectionedConfigSerializer.submit(() -> store.remove(uuid));
         }
-        
-        ConfigManagerImpl.getInstance().saveConfig();
     }
 }
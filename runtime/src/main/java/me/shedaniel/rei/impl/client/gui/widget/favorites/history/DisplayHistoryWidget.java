@@ -98,6 +98,14 @@ public class DisplayHistoryWidget extends WidgetWithBounds implements DraggableC
             xOffset -= getBounds().getWidth();
             DisplayEntry entry = entries.get(i);
             entry.setScrolled(xOffset);
+            if (!entry.isDisplayLoaded() && Math.abs(xOffset) >= getBounds().getWidth()) {
+                // Only read the display once the entry is scrolled into view
+                continue;
+            }
+            if (entry.getDisplay() == null) {
+                DisplayHistoryManager.INSTANCE.hideEntry(entry);
+                continue;
+            }
             if (entry.isStable()) {
                 ScissorsHandler.INSTANCE.scissor(getBounds());
             }
@@ -243,6 +251,7 @@ public class DisplayHistoryWidget extends WidgetWithBounds implements DraggableC
         
         if (containsMouse(mouseX, mouseY)) {
             for (DisplayEntry entry : entries) {
+                if (!entry.isDisplayLoaded()) continue;
                 if (!entry.isStable()) {
                     entry.setReachedStable(true);
                 }
@@ -253,6 +262,7 @@ public class DisplayHistoryWidget extends WidgetWithBounds implements DraggableC
         }
         
         for (DisplayEntry entry : entries) {
+            if (!entry.isDisplayLoaded()) continue;
             if (entry.mouseScrolled(mouseX, mouseY, amount)) {
                 return true;
             }
@@ -264,6 +274,7 @@ public class DisplayHistoryWidget extends WidgetWithBounds implements DraggableC
     @Override
     public boolean mouseClicked(double mouseX, double mouseY, int button) {
         for (DisplayEntry entry : DisplayHistoryManager.INSTANCE.getEntries(this)) {
+            if (!entry.isDisplayLoaded()) continue;
             if (!ignoreNextMouse && entry.mouseClicked(mouseX, mouseY, button)) {
                 return true;
             }
@@ -282,6 +293,7 @@ public class DisplayHistoryWidget extends WidgetWithBounds implements DraggableC
         Collection<DisplayEntry> entries = DisplayHistoryManager.INSTANCE.getEntries(this);
         
         for (DisplayEntry entry : entries) {
+            if (!entry.isDisplayLoaded()) continue;
             if (entry.mouseReleased(mouseX, mouseY, button)) {
                 return true;
             }
@@ -293,6 +305,7 @@ public class DisplayHistoryWidget extends WidgetWithBounds implements DraggableC
             if (containsMouse(mouse)) {
                 double xOffset = -this.scroll.value();
                 for (DisplayEntry entry : entries) {
+                    if (!entry.isDisplayLoaded()) continue;
                     if (entry.isStable() && entry.getBounds().contains(mouse.x + xOffset, mouse.y)) {
                         DisplayHistoryManager.INSTANCE.removeEntry(entry);
                         scroll.setAs(scroll.target() - getBounds().getWidth());
@@ -315,6 +328,7 @@ public class DisplayHistoryWidget extends WidgetWithBounds implements DraggableC
         Collection<DisplayEntry> entries = DisplayHistoryManager.INSTANCE.getEntries(this);
         
         for (DisplayEntry entry : entries) {
+            if (!entry.isDisplayLoaded()) continue;
             if (entry.keyPressed(keyCode, scanCode, modifiers)) {
                 return true;
             }
@@ -326,6 +340,7 @@ public class DisplayHistoryWidget extends WidgetWithBounds implements DraggableC
             if (containsMouse(mouse)) {
                 double xOffset = -this.scroll.value();
                 for (DisplayEntry entry : entries) {
+                    if (!entry.isDisplayLoaded()) continue;
                     if (entry.isStable() && entry.getBounds().contains(mouse.x + xOffset, mouse.y)) {
                         DisplayHistoryManager.INSTANCE.removeEntry(entry);
                         scroll.setAs(scroll.target() - getBounds().getWidth());
@@ -371,6 +386,7 @@ public class DisplayHistoryWidget extends WidgetWithBounds implements DraggableC
             Collection<DisplayEntry> entries = DisplayHistoryManager.INSTANCE.getEntries(this);
             
             for (DisplayEntry entry : entries) {
+                if (!entry.isDisplayLoaded()) continue;
                 if (entry.isStable() && entry.getBounds().contains(mouseX + xOffset, mouseY)) {
                     for (DraggableComponentProviderWidget<Object> widget : Widgets.<DraggableComponentProviderWidget<Object>>walk(entry.getWidgets(), child -> child instanceof DraggableComponentProviderWidget)) {
                         DraggableComponent<Object> hovered = widget.getHovered(context, entry.transformMouseX(mouseX), entry.transformMouseY(mouseY));
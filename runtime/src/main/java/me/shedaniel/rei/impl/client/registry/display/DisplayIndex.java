@@ -0,0 +1,171 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.shedaniel.rei.impl.client.registry.display;
+
+import dev.architectury.event.CompoundEventResult;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntLists;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import me.shedaniel.rei.api.common.category.CategoryIdentifier;
+import me.shedaniel.rei.api.common.display.Display;
+import me.shedaniel.rei.api.common.entry.EntryIngredient;
+import me.shedaniel.rei.api.common.entry.EntryStack;
+import me.shedaniel.rei.api.common.entry.comparison.ComparisonContext;
+import me.shedaniel.rei.api.common.entry.type.EntryDefinition;
+import me.shedaniel.rei.api.common.entry.type.EntryType;
+import me.shedaniel.rei.api.common.entry.type.EntryTypeBridge;
+import me.shedaniel.rei.api.common.entry.type.EntryTypeRegistry;
+import me.shedaniel.rei.api.common.util.EntryStacks;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * A reverse index from the {@link EntryStacks#hashFuzzy(EntryStack) fuzzy hash} of the inputs and outputs
+ * to the positions of the displays in their category.
+ * <p>
+ * Lookups only produce candidates, every candidate still has to be checked with {@link EntryStacks#equalsFuzzy}.
+ * Stacks are also looked up by the stacks they bridge to, as {@link EntryStacks#equals(EntryStack, EntryStack, ComparisonContext)}
+ * compares stacks of different types with their {@link EntryTypeBridge bridges}.
+ */
+@ApiStatus.Internal
+public class DisplayIndex {
+    private final Map<CategoryIdentifier<?>, CategoryIndex> categories = new ConcurrentHashMap<>();
+    private final EntryTypeRegistry types;
+    
+    public DisplayIndex(EntryTypeRegistry types) {
+        this.types = types;
+    }
+    
+    public void index(Display display, int position) {
+        categories.computeIfAbsent(display.getCategoryIdentifier(), $ -> new CategoryIndex())
+                .index(display, position);
+    }
+    
+    /**
+     * Returns the ascending positions of the displays of the category that may output any of {@code recipesFor},
+     * or take any of {@code usagesFor} as an input.
+     * <p>
+     * Returns {@code null} if any of the stacks is of a type that other types bridge to, the indexed stacks are not bridged,
+     * so every display of the category has to be checked for those.
+     */
+    @Nullable
+    public IntList find(CategoryIdentifier<?> categoryId, List<EntryStack<?>> recipesFor, List<EntryStack<?>> usagesFor) {
+        CategoryIndex index = categories.get(categoryId);
+        if (index == null) return IntLists.emptyList();
+        List<EntryStack<?>> bridgedRecipesFor = bridge(recipesFor);
+        List<EntryStack<?>> bridgedUsagesFor = bridge(usagesFor);
+        if (bridgedRecipesFor == null || bridgedUsagesFor == null) return null;
+        return index.find(bridgedRecipesFor, bridgedUsagesFor);
+    }
+    
+    /**
+     * Returns the stacks with the stacks they bridge to, or {@code null} if any of the stacks may be bridged to.
+     */
+    @Nullable
+    private List<EntryStack<?>> bridge(List<EntryStack<?>> stacks) {
+        List<EntryStack<?>> bridged = stacks;
+        for (EntryStack<?> stack : stacks) {
+            for (EntryDefinition<?> definition : types.values()) {
+                EntryType<?> type = definition.getType();
+                if (type.getId().equals(stack.getType().getId())) continue;
+                if (types.getBridgesFor(type, stack.getType()).iterator().hasNext()) return null;
+                if (types.getBridgesFor(stack.getType(), type).iterator().hasNext()) {
+                    if (bridged == stacks) bridged = new ArrayList<>(stacks);
+                    bridge(stack, type, bridged);
+                }
+            }
+        }
+        return bridged;
+    }
+    
+    private <A> void bridge(EntryStack<A> stack, EntryType<?> destination, List<EntryStack<?>> bridged) {
+        for (EntryTypeBridge<A, ?> bridge : types.getBridgesFor(stack.getType(), destination)) {
+            CompoundEventResult<? extends Stream<? extends EntryStack<?>>> result = bridge.bridge(stack);
+            if (result.isTrue()) {
+                result.object().forEach(bridged::add);
+            }
+        }
+    }
+    
+    private static class CategoryIndex {
+        private final Long2ObjectMap<IntArrayList> outputs = new Long2ObjectOpenHashMap<>();
+        private final Long2ObjectMap<IntArrayList> inputs = new Long2ObjectOpenHashMap<>();
+        private final LongSet hashes = new LongOpenHashSet();
+        
+        public synchronized void index(Display display, int position) {
+            index(outputs, display.getOutputEntries(), position);
+            index(inputs, display.getInputEntries(), position);
+        }
+        
+        private void index(Long2ObjectMap<IntArrayList> postings, List<EntryIngredient> ingredients, int position) {
+            hashes.clear();
+            for (EntryIngredient ingredient : ingredients) {
+                for (EntryStack<?> stack : ingredient) {
+                    if (hashes.add(EntryStacks.hashFuzzy(stack))) {
+                        postings.computeIfAbsent(EntryStacks.hashFuzzy(stack), $ -> new IntArrayList()).add(position);
+                    }
+                }
+            }
+        }
+        
+        public synchronized IntList find(List<EntryStack<?>> recipesFor, List<EntryStack<?>> usagesFor) {
+            IntArrayList positions = new IntArrayList();
+            collect(outputs, recipesFor, positions);
+            collect(inputs, usagesFor, positions);
+            if (positions.isEmpty()) return positions;
+            
+            // Merge the posting lists, keeping the order of the displays in the category
+            int[] elements = positions.elements();
+            IntArrays.unstableSort(elements, 0, positions.size());
+            int size = 1;
+            for (int i = 1; i < positions.size(); i++) {
+                if (elements[i] != elements[size - 1]) {
+                    elements[size++] = elements[i];
+                }
+            }
+            positions.size(size);
+            return positions;
+        }
+        
+        private static void collect(Long2ObjectMap<IntArrayList> postings, List<EntryStack<?>> stacks, IntArrayList positions) {
+            for (EntryStack<?> stack : stacks) {
+                IntArrayList list = postings.get(EntryStacks.hashFuzzy(stack));
+                if (list != null) {
+                    positions.addAll(list);
+                }
+            }
+        }
+    }
+}
@@ -29,6 +29,7 @@ import com.google.common.collect.ForwardingMapEntry;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
 import dev.architectury.event.EventResult;
+import me.shedaniel.rei.api.client.config.ConfigObject;
 import me.shedaniel.rei.api.client.plugins.REIClientPlugin;
 import me.shedaniel.rei.api.client.registry.category.CategoryRegistry;
 import me.shedaniel.rei.api.client.registry.display.DisplayCategory;
@@ -39,6 +40,7 @@ import me.shedaniel.rei.api.client.registry.display.reason.DisplayAdditionReason
 import me.shedaniel.rei.api.client.registry.display.visibility.DisplayVisibilityPredicate;
 import me.shedaniel.rei.api.common.category.CategoryIdentifier;
 import me.shedaniel.rei.api.common.display.Display;
+import me.shedaniel.rei.api.common.entry.type.EntryTypeRegistry;
 import me.shedaniel.rei.api.common.plugins.PluginManager;
 import me.shedaniel.rei.impl.common.InternalLogger;
 import me.shedaniel.rei.impl.common.registry.RecipeManagerContextImpl;
@@ -49,21 +51,30 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.UnaryOperator;
 
 public class DisplayRegistryImpl extends RecipeManagerContextImpl<REIClientPlugin> implements DisplayRegistry {
+    private static final int FILL_PARTITION_SIZE = 256;
     private final WeakHashMap<Display, Object> displaysBase = new WeakHashMap<>();
     private final Map<CategoryIdentifier<?>, DisplaysList> displays = new ConcurrentHashMap<>();
     private final Map<CategoryIdentifier<?>, List<Display>> unmodifiableDisplays;
     private final Map<CategoryIdentifier<?>, List<DynamicDisplayGenerator<?>>> displayGenerators = new ConcurrentHashMap<>();
     private final List<DynamicDisplayGenerator<?>> globalDisplayGenerators = new ArrayList<>();
     private final List<DisplayVisibilityPredicate> visibilityPredicates = new ArrayList<>();
+    private final DisplayVisibilityCache visibilityCache = new DisplayVisibilityCache();
+    private final Predicate<Display> visibilityTester = this::testDisplayVisible;
     private final List<DisplayFiller<?>> fillers = new ArrayList<>();
+    private final Map<Class<?>, DisplayFiller<?>[]> fillersByClass = new ConcurrentHashMap<>();
     private final MutableInt displayCount = new MutableInt(0);
+    @Nullable
+    private volatile DisplayIndex index;
     
     public DisplayRegistryImpl() {
         super(RecipeManagerContextImpl.supplier());
@@ -199,9 +210,13 @@ public class DisplayRegistryImpl extends RecipeManagerContextImpl<REIClientPlugi
             }
         }
         
-        displays.computeIfAbsent(display.getCategoryIdentifier(), location -> new DisplaysList())
-                .add(display);
+        DisplaysList list = displays.computeIfAbsent(display.getCategoryIdentifier(), location -> new DisplaysList());
+        list.add(display);
         displayCount.increment();
+        DisplayIndex index = this.index;
+        if (index != null) {
+            index.index(display, list.size() - 1);
+        }
         if (origin != null) {
             synchronized (displaysBase) {
                 displaysBase.put(display, origin);
@@ -241,11 +256,16 @@ public class DisplayRegistryImpl extends RecipeManagerContextImpl<REIClientPlugi
     public void registerVisibilityPredicate(DisplayVisibilityPredicate predicate) {
         visibilityPredicates.add(predicate);
         visibilityPredicates.sort(Comparator.reverseOrder());
+        visibilityCache.invalidate();
         InternalLogger.getInstance().debug("Added display visibility predicate: %s [%.2f priority]", predicate, predicate.getPriority());
     }
     
     @Override
     public boolean isDisplayVisible(Display display) {
+        return visibilityCache.isVisible(display, visibilityTester);
+    }
+    
+    private boolean testDisplayVisible(Display display) {
         DisplayCategory<Display> category = (DisplayCategory<Display>) CategoryRegistry.getInstance().get(display.getCategoryIdentifier()).getCategory();
         Preconditions.checkNotNull(category, "Failed to resolve category: " + display.getCategoryIdentifier());
         for (DisplayVisibilityPredicate predicate : visibilityPredicates) {
@@ -262,6 +282,15 @@ public class DisplayRegistryImpl extends RecipeManagerContextImpl<REIClientPlugi
         return true;
     }
     
+    @Override
+    public void invalidateDisplayVisibility() {
+        visibilityCache.invalidate();
+    }
+    
+    public DisplayVisibilityCache.Metrics getVisibilityMetrics() {
+        return visibilityCache.getMetrics();
+    }
+    
     @Override
     public List<DisplayVisibilityPredicate> getVisibilityPredicates() {
         return Collections.unmodifiableList(visibilityPredicates);
@@ -274,13 +303,15 @@ public class DisplayRegistryImpl extends RecipeManagerContextImpl<REIClientPlugi
     
     @Override
     public <T, D extends Display> void registerFiller(Class<T> typeClass, BiPredicate<? extends T, DisplayAdditionReasons> predicate, Function<? extends T, D> filler) {
-        fillers.add(new DisplayFiller<>((o, s) -> typeClass.isInstance(o) && ((BiPredicate<Object, DisplayAdditionReasons>) predicate).test(o, s), (Function<Object, D>) filler));
+        fillers.add(new DisplayFiller<>(typeClass, (o, s) -> typeClass.isInstance(o) && ((BiPredicate<Object, DisplayAdditionReasons>) predicate).test(o, s), (Function<Object, D>) filler));
+        fillersByClass.clear();
         InternalLogger.getInstance().debug("Added display filter: %s for %s", filler, typeClass.getName());
     }
     
     @Override
     public <D extends Display> void registerFiller(Predicate<?> predicate, Function<?, D> filler) {
-        fillers.add(new DisplayFiller<>((o, s) -> ((Predicate<Object>) predicate).test(o), (Function<Object, D>) filler));
+        fillers.add(new DisplayFiller<>(null, (o, s) -> ((Predicate<Object>) predicate).test(o), (Function<Object, D>) filler));
+        fillersByClass.clear();
         InternalLogger.getInstance().debug("Added display filter: %s", filler);
     }
     
@@ -288,9 +319,12 @@ public class DisplayRegistryImpl extends RecipeManagerContextImpl<REIClientPlugi
     public void startReload() {
         super.startReload();
         this.displays.clear();
+        this.index = null;
         this.displayGenerators.clear();
         this.visibilityPredicates.clear();
+        this.visibilityCache.invalidate();
         this.fillers.clear();
+        this.fillersByClass.clear();
         this.displayCount.setValue(0);
     }
     
@@ -298,9 +332,13 @@ public class DisplayRegistryImpl extends RecipeManagerContextImpl<REIClientPlugi
     public void endReload() {
         if (!fillers.isEmpty()) {
             List<Recipe<?>> allSortedRecipes = getAllSortedRecipes();
-            for (int i = allSortedRecipes.size() - 1; i >= 0; i--) {
-                Recipe<?> recipe = allSortedRecipes.get(i);
-                addWithReason(recipe, DisplayAdditionReason.RECIPE_MANAGER);
+            if (ConfigObject.getInstance().doesFillDisplaysInParallel() && allSortedRecipes.size() > FILL_PARTITION_SIZE) {
+                fillDisplaysInParallel(allSortedRecipes);
+            } else {
+                for (int i = allSortedRecipes.size() - 1; i >= 0; i--) {
+                    Recipe<?> recipe = allSortedRecipes.get(i);
+                    addWithReason(recipe, DisplayAdditionReason.RECIPE_MANAGER);
+                }
             }
         }
         
@@ -311,6 +349,59 @@ public class DisplayRegistryImpl extends RecipeManagerContextImpl<REIClientPlugi
         }
         
         InternalLogger.getInstance().debug("Registered %d displays", displayCount.getValue());
+        
+        DisplayIndex index = new DisplayIndex(EntryTypeRegistry.getInstance());
+        for (DisplaysList list : displays.values()) {
+            for (int i = 0; i < list.size(); i++) {
+                index.index(list.get(i), i);
+            }
+        }
+        this.index = index;
+        // Predicates may depend on the registered displays
+        this.visibilityCache.invalidate();
+    }
+    
+    /**
+     * Returns the reverse index of the displays, or {@code null} if the displays are still reloading.
+     */
+    @Nullable
+    public DisplayIndex getIndex() {
+        return index;
+    }
+    
+    /**
+     * Fills the displays of the recipes in partitions on the common fork-join pool,
+     * the partitions are then added in order, so the displays are registered in the same order as filling them sequentially.
+     */
+    private void fillDisplaysInParallel(List<Recipe<?>> allSortedRecipes) {
+        int partitionSize = Math.max(FILL_PARTITION_SIZE, allSortedRecipes.size() / (ForkJoinPool.getCommonPoolParallelism() * 4) + 1);
+        List<CompletableFuture<List<FilledDisplay>>> futures = new ArrayList<>();
+        for (int start = allSortedRecipes.size() - 1; start >= 0; start -= partitionSize) {
+            int from = start, to = Math.max(start - partitionSize, -1);
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                List<FilledDisplay> filled = new ArrayList<>();
+                for (int i = from; i > to; i--) {
+                    Recipe<?> recipe = allSortedRecipes.get(i);
+                    for (Display display : tryFillDisplay(recipe, DisplayAdditionReason.RECIPE_MANAGER)) {
+                        filled.add(new FilledDisplay(display, recipe));
+                    }
+                }
+                return filled;
+            }, ForkJoinPool.commonPool()));
+        }
+        
+        for (CompletableFuture<List<FilledDisplay>> future : futures) {
+            List<FilledDisplay> filled;
+            try {
+                filled = future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+                throw e;
+            }
+            for (FilledDisplay display : filled) {
+                add(display.display(), display.origin());
+            }
+        }
     }
     
     @Override
@@ -318,7 +409,7 @@ public class DisplayRegistryImpl extends RecipeManagerContextImpl<REIClientPlugi
         if (value instanceof Display) return Collections.singleton((Display) value);
         List<Display> displays = null;
         DisplayAdditionReasons reasons = reason.length == 0 ? DisplayAdditionReasons.Impl.EMPTY : new DisplayAdditionReasons.Impl(reason);
-        for (DisplayFiller<?> filler : fillers) {
+        for (DisplayFiller<?> filler : getFillers(value.getClass())) {
             Display display = tryFillDisplayGenerics(filler, value, reasons);
             if (display != null) {
                 if (displays == null) displays = Collections.singletonList(display);
@@ -334,6 +425,25 @@ public class DisplayRegistryImpl extends RecipeManagerContextImpl<REIClientPlugi
         return Collections.emptyList();
     }
     
+    /**
+     * Returns the fillers that may accept values of the class, in the order they are registered.
+     * Fillers registered with a type class are skipped without evaluating their predicates if the class is not assignable.
+     */
+    private DisplayFiller<?>[] getFillers(Class<?> valueClass) {
+        DisplayFiller<?>[] applicable = fillersByClass.get(valueClass);
+        if (applicable == null) {
+            List<DisplayFiller<?>> list = new ArrayList<>();
+            for (DisplayFiller<?> filler : fillers) {
+                if (filler.typeClass() == null || filler.typeClass().isAssignableFrom(valueClass)) {
+                    list.add(filler);
+                }
+            }
+            applicable = list.toArray(new DisplayFiller[0]);
+            fillersByClass.put(valueClass, applicable);
+        }
+        return applicable;
+    }
+    
     private <D extends Display> D tryFillDisplayGenerics(DisplayFiller<D> filler, Object value, DisplayAdditionReasons reasons) {
         try {
             if (filler.predicate.test(value, reasons)) {
@@ -353,8 +463,12 @@ public class DisplayRegistryImpl extends RecipeManagerContextImpl<REIClientPlugi
     }
     
     private record DisplayFiller<D extends Display>(
+            @Nullable Class<?> typeClass,
+            
             BiPredicate<Object, DisplayAdditionReasons> predicate,
             
             Function<Object, D> mappingFunction
     ) {}
+    
+    private record FilledDisplay(Display display, Object origin) {}
 }
@@ -0,0 +1,84 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.shedaniel.rei.impl.client.registry.display;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import me.shedaniel.rei.api.common.display.Display;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Caches the visibility of displays by identity, every entry is tagged with the epoch it was computed in,
+ * and bumping the epoch invalidates every entry at once.
+ * <p>
+ * Displays are weakly referenced, so the displays from dynamic generators are dropped once they are no longer used.
+ */
+@ApiStatus.Internal
+public class DisplayVisibilityCache {
+    private final Cache<Display, Integer> entries = CacheBuilder.newBuilder()
+            .weakKeys()
+            .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+            .build();
+    private final AtomicInteger epoch = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder missNanos = new LongAdder();
+    
+    public boolean isVisible(Display display, Predicate<Display> predicate) {
+        int epoch = this.epoch.get();
+        Integer entry = entries.getIfPresent(display);
+        if (entry != null && entry >>> 1 == epoch) {
+            hits.increment();
+            return (entry & 1) != 0;
+        }
+        misses.increment();
+        long start = System.nanoTime();
+        boolean visible = predicate.test(display);
+        missNanos.add(System.nanoTime() - start);
+        // Stored with the epoch the predicates were evaluated in, so a concurrent invalidation is not lost
+        entries.put(display, epoch << 1 | (visible ? 1 : 0));
+        return visible;
+    }
+    
+    public void invalidate() {
+        // Keep the epoch within 30 bits, so that it still fits once packed with the visibility
+        epoch.updateAndGet(epoch -> (epoch + 1) & Integer.MAX_VALUE >>> 1);
+        entries.invalidateAll();
+    }
+    
+    public Metrics getMetrics() {
+        return new Metrics((int) entries.size(), epoch.get(), hits.sum(), misses.sum(), missNanos.sum());
+    }
+    
+    public record Metrics(int size, int epoch, long hits, long misses, long missNanos) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
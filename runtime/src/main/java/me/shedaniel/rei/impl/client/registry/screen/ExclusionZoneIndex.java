@@ -0,0 +1,110 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.shedaniel.rei.impl.client.registry.screen;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import me.shedaniel.math.Rectangle;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable snapshot of exclusion zones, bucketed into a uniform grid so that a point
+ * only has to be tested against the zones overlapping its cell.
+ */
+@ApiStatus.Internal
+public final class ExclusionZoneIndex {
+    public static final ExclusionZoneIndex EMPTY = new ExclusionZoneIndex(List.of());
+    private static final int CELL_SHIFT = 5;
+    /**
+     * Zones covering more cells than this are tested for every point instead of being bucketed.
+     */
+    private static final int MAX_CELLS = 1024;
+    private static final Rectangle[] NO_ZONES = new Rectangle[0];
+    
+    private final List<Rectangle> zones;
+    private final Long2ObjectMap<Rectangle[]> cells;
+    private final Rectangle[] oversized;
+    private final long hash;
+    
+    public ExclusionZoneIndex(List<Rectangle> zones) {
+        this.zones = zones.stream().filter(Objects::nonNull).toList();
+        Long2ObjectMap<List<Rectangle>> cells = new Long2ObjectOpenHashMap<>();
+        List<Rectangle> oversized = new ArrayList<>();
+        long hash = 31;
+        for (Rectangle zone : this.zones) {
+            hash = 31 * hash + zone.hashCode();
+            if (zone.isEmpty()) continue;
+            long minX = zone.x >> CELL_SHIFT, maxX = ((long) zone.x + zone.width - 1) >> CELL_SHIFT;
+            long minY = zone.y >> CELL_SHIFT, maxY = ((long) zone.y + zone.height - 1) >> CELL_SHIFT;
+            if ((maxX - minX + 1) * (maxY - minY + 1) > MAX_CELLS) {
+                oversized.add(zone);
+                continue;
+            }
+            for (int cellX = (int) minX; cellX <= maxX; cellX++) {
+                for (int cellY = (int) minY; cellY <= maxY; cellY++) {
+                    cells.computeIfAbsent(cell(cellX, cellY), $ -> new ObjectArrayList<>()).add(zone);
+                }
+            }
+        }
+        this.cells = new Long2ObjectOpenHashMap<>(cells.size());
+        for (Long2ObjectMap.Entry<List<Rectangle>> entry : cells.long2ObjectEntrySet()) {
+            this.cells.put(entry.getLongKey(), entry.getValue().toArray(NO_ZONES));
+        }
+        this.oversized = oversized.toArray(NO_ZONES);
+        this.hash = hash;
+    }
+    
+    private static long cell(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+    
+    public boolean contains(double x, double y) {
+        for (Rectangle zone : oversized) {
+            if (zone.contains(x, y)) return true;
+        }
+        Rectangle[] candidates = cells.get(cell((int) Math.floor(x) >> CELL_SHIFT, (int) Math.floor(y) >> CELL_SHIFT));
+        if (candidates != null) {
+            for (Rectangle zone : candidates) {
+                if (zone.contains(x, y)) return true;
+            }
+        }
+        return false;
+    }
+    
+    public List<Rectangle> getZones() {
+        return zones;
+    }
+    
+    /**
+     * Returns the hash of the zones in order, used to detect whether the zones changed between snapshots.
+     */
+    public long getHash() {
+        return hash;
+    }
+}
@@ -38,7 +38,9 @@ import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.world.InteractionResult;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.ref.WeakReference;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
@@ -52,6 +54,8 @@ public class ExclusionZonesImpl implements ExclusionZones {
     
     private long lastArea = -1;
     private final Multimap<Class<?>, Function<Screen, Collection<Rectangle>>> list = HashMultimap.create();
+    @Nullable
+    private volatile Snapshot snapshot;
     
     @Override
     public <R extends Screen> boolean isHandingScreen(Class<R> screen) {
@@ -65,26 +69,34 @@ public class ExclusionZonesImpl implements ExclusionZones {
     
     @Override
     public InteractionResult isInZone(double mouseX, double mouseY) {
-        Screen screen = Minecraft.getInstance().screen;
-        Class<? extends Screen> screenClass = screen.getClass();
-        
-        synchronized (list) {
-            for (Map.Entry<Class<?>, Collection<Function<Screen, Collection<Rectangle>>>> collectionEntry : list.asMap().entrySet()) {
-                if (collectionEntry.getKey().isAssignableFrom(screenClass)) {
-                    for (Function<Screen, Collection<Rectangle>> listSupplier : collectionEntry.getValue()) {
-                        for (Rectangle zone : listSupplier.apply(screen)) {
-                            if (zone.contains(mouseX, mouseY)) {
-                                return InteractionResult.FAIL;
-                            }
-                        }
-                    }
-                }
-            }
+        if (getSnapshot(Minecraft.getInstance().screen).contains(mouseX, mouseY)) {
+            return InteractionResult.FAIL;
         }
         
         return InteractionResult.PASS;
     }
     
+    /**
+     * Queries the providers for the zones of the screen and indexes them, the index is used
+     * for every query until the next snapshot. The overlay takes a snapshot every frame before laying out.
+     *
+     * @param screen the screen to snapshot the zones of
+     * @return the new snapshot
+     */
+    public ExclusionZoneIndex updateSnapshot(@Nullable Screen screen) {
+        ExclusionZoneIndex index = screen == null ? ExclusionZoneIndex.EMPTY : new ExclusionZoneIndex(getExclusionZones(screen, false));
+        this.snapshot = new Snapshot(new WeakReference<>(screen), index);
+        return index;
+    }
+    
+    public ExclusionZoneIndex getSnapshot(@Nullable Screen screen) {
+        Snapshot snapshot = this.snapshot;
+        if (snapshot != null && snapshot.screen().get() == screen) {
+            return snapshot.index();
+        }
+        return updateSnapshot(screen);
+    }
+    
     @Override
     public boolean shouldRecalculateArea(DisplayPanelLocation location, Rectangle rectangle) {
         long current = currentHashCode(location);
@@ -95,7 +107,7 @@ public class ExclusionZonesImpl implements ExclusionZones {
     }
     
     private long currentHashCode(DisplayPanelLocation location) {
-        return areasHashCode(getExclusionZones(Minecraft.getInstance().screen, false));
+        return getSnapshot(Minecraft.getInstance().screen).getHash();
     }
     
     @Override
@@ -141,6 +153,7 @@ public class ExclusionZonesImpl implements ExclusionZones {
         synchronized (list) {
             list.put(screenClass, screen -> ((ExclusionZonesProvider<T>) provider).provide((T) screen));
         }
+        this.snapshot = null;
         
         InternalLogger.getInstance().debug("Added exclusion zones provider: %s for %s", provider, screenClass.getName());
         if (!PluginManager.areAnyReloading()) {
@@ -148,11 +161,5 @@ public class ExclusionZonesImpl implements ExclusionZones {
         }
     }
     
-    private long areasHashCode(List<Rectangle> exclusionZones) {
-        int hashCode = 31;
-        for (Rectangle e : exclusionZones)
-            hashCode = 31 * hashCode + (e == null ? 0 : e.hashCode());
-        return hashCode;
-    }
-    
+    private record Snapshot(WeakReference<Screen> screen, ExclusionZoneIndex index) {}
 }
@@ -28,31 +28,49 @@ import dev.architectury.platform.Platform;
 import me.shedaniel.rei.api.client.config.ConfigObject;
 import me.shedaniel.rei.api.client.search.SearchFilter;
 import me.shedaniel.rei.api.client.search.SearchProvider;
+import me.shedaniel.rei.api.client.search.method.InputMethod;
 import me.shedaniel.rei.api.common.entry.EntryStack;
 import me.shedaniel.rei.api.common.util.CollectionUtils;
+import me.shedaniel.rei.api.common.util.EntryStacks;
 import me.shedaniel.rei.impl.client.search.argument.Argument;
 import me.shedaniel.rei.impl.client.search.argument.type.ArgumentType;
-import me.shedaniel.rei.impl.client.util.ThreadCreator;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.function.BiConsumer;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
 
 public class AsyncSearchManager {
-    private static final ExecutorService EXECUTOR_SERVICE = new ThreadCreator("REI-AsyncSearchManager").asService();
+    private static final int RECENT_RESULTS_SIZE = 16;
     private final Supplier<List<EntryStack<?>>> stacksProvider;
     private final Supplier<Predicate<EntryStack<?>>> additionalPredicateSupplier;
     private final UnaryOperator<EntryStack<?>> transformer;
     private ExecutorTuple executor;
     private SearchFilter filter;
+    /**
+     * Cancelled when the filter changes, the token of every search of the filter is a child of this.
+     */
+    private SearchCancellationToken filterToken = SearchCancellationToken.create();
     private Map.Entry<List<EntryStack<?>>, SearchFilter> last;
+    private final Map<String, Map.Entry<List<EntryStack<?>>, SearchFilter>> recentResults = new LinkedHashMap<>(RECENT_RESULTS_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map.Entry<List<EntryStack<?>>, SearchFilter>> eldest) {
+            return size() > RECENT_RESULTS_SIZE;
+        }
+    };
+    /**
+     * The {@link Argument#getCacheGeneration() generation of the search cache} the recent results were matched with.
+     */
+    private int recentGeneration = Argument.getCacheGeneration();
     
     public AsyncSearchManager(Supplier<List<EntryStack<?>>> stacksProvider, Supplier<Predicate<EntryStack<?>>> additionalPredicateSupplier, UnaryOperator<EntryStack<?>> transformer) {
         this.stacksProvider = stacksProvider;
@@ -63,6 +81,7 @@ public class AsyncSearchManager {
     public void markDirty() {
         synchronized (AsyncSearchManager.this) {
             this.last = null;
+            this.recentResults.clear();
         }
     }
     
@@ -71,15 +90,30 @@ public class AsyncSearchManager {
         return this.filter;
     }
     
-    private record ExecutorTuple(SearchFilter filter, CompletableFuture<Map.Entry<List<EntryStack<?>>, SearchFilter>> future) {
+    private record ExecutorTuple(SearchFilter filter, SearchCancellationToken token, CompletableFuture<Map.Entry<List<EntryStack<?>>, SearchFilter>> future) {
+        private void cancel() {
+            token.cancel();
+            future.cancel(Platform.isFabric());
+        }
+    }
+    
+    /**
+     * Receives the matches of the partitions completed so far while an async search is still running.
+     * Only partitions completed in a row are published, starting from the first partition, or from the last if {@code fromEnd},
+     * so every published list is a prefix, or a suffix, of the final result in the same order.
+     */
+    public record PartialResults(BiConsumer<List<EntryStack<?>>, SearchFilter> consumer, boolean fromEnd) {
     }
     
     public void updateFilter(String filter) {
-        if (this.filter == null || !this.filter.getFilter().equals(filter)) {
+        if (this.filter == null || !this.filter.getFilter().equals(filter)
+            || (this.filter instanceof SearchProviderImpl.SearchFilterImpl filterImpl && filterImpl.getInputMethod() != InputMethod.active())) {
             if (this.executor != null) {
-                this.executor.future().cancel(Platform.isFabric());
+                this.executor.cancel();
             }
             this.executor = null;
+            this.filterToken.cancel();
+            this.filterToken = SearchCancellationToken.create();
             this.filter = SearchProvider.getInstance().createFilter(filter);
         }
     }
@@ -91,25 +125,30 @@ public class AsyncSearchManager {
     }
     
     public Future<?> getAsync(BiConsumer<List<EntryStack<?>>, SearchFilter> consumer) {
+        return getAsync(consumer, null);
+    }
+    
+    public Future<?> getAsync(BiConsumer<List<EntryStack<?>>, SearchFilter> consumer, @Nullable PartialResults partialResults) {
         if (this.executor == null || this.executor.filter() != filter || isDirty()) {
             if (this.executor != null) {
-                this.executor.future().cancel(Platform.isFabric());
+                this.executor.cancel();
             }
-            this.executor = new ExecutorTuple(filter, get(EXECUTOR_SERVICE));
+            SearchCancellationToken token = filterToken.child();
+            this.executor = new ExecutorTuple(filter, token, get(token, partialResults));
         }
         SearchFilter savedFilter = filter;
-        return (this.executor = new ExecutorTuple(this.executor.filter(), this.executor.future().thenApplyAsync(result -> {
+        return (this.executor = new ExecutorTuple(this.executor.filter(), this.executor.token(), this.executor.future().thenApplyAsync(result -> {
             if (savedFilter == filter) {
                 consumer.accept(result.getKey(), result.getValue());
             }
             
             return result;
-        }, EXECUTOR_SERVICE))).future();
+        }, SearchScheduler.getInstance().executor()))).future();
     }
     
     public List<EntryStack<?>> getNow() {
         try {
-            return get(Runnable::run).get().getKey();
+            return get(filterToken.child(), null).get().getKey();
         } catch (ExecutionException e) {
             throw new RuntimeException(e);
         } catch (InterruptedException | CancellationException e) {
@@ -117,17 +156,45 @@ public class AsyncSearchManager {
         }
     }
     
-    public CompletableFuture<Map.Entry<List<EntryStack<?>>, SearchFilter>> get(Executor executor) {
+    public CompletableFuture<Map.Entry<List<EntryStack<?>>, SearchFilter>> get(SearchCancellationToken token, @Nullable PartialResults partialResults) {
+        // The cached data changes with the language, the results matched against the old data must not be reused
+        Argument.checkLanguage();
+        synchronized (AsyncSearchManager.this) {
+            if (this.recentGeneration != Argument.getCacheGeneration()) {
+                this.recentGeneration = Argument.getCacheGeneration();
+                this.last = null;
+                this.recentResults.clear();
+            }
+        }
         if (isDirty()) {
+            SearchFilter filter = this.filter;
             Map.Entry<List<EntryStack<?>>, SearchFilter> last;
+            Map.Entry<List<EntryStack<?>>, SearchFilter> recent;
             synchronized (AsyncSearchManager.this) {
                 last = this.last;
+                recent = this.recentResults.get(filter.getFilter());
+                
+                if (recent != null && isSameInputMethod(recent.getValue(), filter)) {
+                    this.last = new AbstractMap.SimpleImmutableEntry<>(recent.getKey(), filter);
+                    return CompletableFuture.completedFuture(this.last);
+                }
+            }
+            
+            List<EntryStack<?>> stacks;
+            if (last != null && last.getValue() instanceof SearchProviderImpl.SearchFilterImpl lastFilter
+                    && ((SearchProviderImpl.SearchFilterImpl) filter).isNarrowing(lastFilter)) {
+                // Refine the previous results, as the new filter can only match a subset of them
+                stacks = last.getKey();
+            } else {
+                stacks = this.stacksProvider.get();
             }
-            return get(this.filter, this.additionalPredicateSupplier.get(), this.transformer,
-                    this.stacksProvider.get(), last, this, executor)
+            
+            return get(filter, this.additionalPredicateSupplier.get(), this.transformer,
+                    stacks, last, token, partialResults)
                     .thenApply(entry -> {
                         synchronized (AsyncSearchManager.this) {
                             this.last = entry;
+                            this.recentResults.put(entry.getValue().getFilter(), entry);
                         }
                         return entry;
                     });
@@ -138,7 +205,8 @@ public class AsyncSearchManager {
     
     public static CompletableFuture<Map.Entry<List<EntryStack<?>>, SearchFilter>> get(SearchFilter filter, Predicate<EntryStack<?>> additionalPredicate,
             UnaryOperator<EntryStack<?>> transformer, List<EntryStack<?>> stacks, Map.Entry<List<EntryStack<?>>, SearchFilter> last,
-            AsyncSearchManager manager, Executor executor) {
+            SearchCancellationToken token, @Nullable PartialResults partialResults) {
+        SearchScheduler scheduler = SearchScheduler.getInstance();
         int searchPartitionSize = ConfigObject.getInstance().getAsyncSearchPartitionSize();
         boolean shouldAsync = ConfigObject.getInstance().shouldAsyncSearch() && stacks.size() > searchPartitionSize * 4;
         
@@ -147,51 +215,60 @@ public class AsyncSearchManager {
             
             if (last == null || last.getValue() != filter) {
                 Runnable prepare = () -> {
-                    if (manager.filter == filter) {
-                        List<ArgumentType<?, ?>> argumentTypes = ((SearchProviderImpl.SearchFilterImpl) filter).getArgumentTypes();
-                        Argument.prepareFilter(stacks, argumentTypes, () -> manager.filter() != null && manager.filter() == filter, executor);
-                    } else {
-                        throw new CancellationException();
-                    }
+                    token.throwIfCancelled();
+                    List<ArgumentType<?, ?>> argumentTypes = ((SearchProviderImpl.SearchFilterImpl) filter).getArgumentTypes();
+                    Argument.prepareFilter(stacks, argumentTypes, token);
                 };
                 if (shouldAsync) {
-                    preparationFuture = CompletableFuture.runAsync(prepare, executor);
+                    preparationFuture = scheduler.run(token, prepare);
                 } else {
                     prepare.run();
                     preparationFuture = CompletableFuture.completedFuture(null);
                 }
             }
             
+            LongPredicate candidates = ((SearchProviderImpl.SearchFilterImpl) filter).findCandidates();
+            
             if (shouldAsync) {
                 List<CompletableFuture<List<EntryStack<?>>>> futures = Lists.newArrayList();
-                for (Iterable<EntryStack<?>> partitionStacks : CollectionUtils.partition(stacks, Math.max(searchPartitionSize, stacks.size() * 3 / Runtime.getRuntime().availableProcessors()))) {
-                    futures.add(CompletableFuture.supplyAsync(() -> {
+                // A few partitions per thread, so that threads finishing early can pick up the remaining partitions
+                int partitions = SearchScheduler.getParallelism() * 4;
+                int partitionSize = Math.max(searchPartitionSize, (stacks.size() + partitions - 1) / partitions);
+                for (Iterable<EntryStack<?>> partitionStacks : CollectionUtils.partition(stacks, partitionSize)) {
+                    futures.add(scheduler.supply(token, () -> {
                         List<EntryStack<?>> filtered = Lists.newArrayList();
                         for (EntryStack<?> stack : partitionStacks) {
-                            if (stack != null && filter.test(stack) && additionalPredicate.test(stack)) {
+                            if (stack != null && isCandidate(candidates, stack) && filter.test(stack) && additionalPredicate.test(stack)) {
                                 filtered.add(transformer.apply(stack));
                             }
-                            if (manager.filter != filter) throw new CancellationException();
+                            token.throwIfCancelled();
                         }
                         return filtered;
-                    }, executor));
+                    }));
+                }
+                if (partialResults != null) {
+                    PartialCollector collector = new PartialCollector(futures, partialResults, filter, token);
+                    for (CompletableFuture<List<EntryStack<?>>> future : futures) {
+                        future.thenRun(collector::advance);
+                    }
                 }
                 return preparationFuture.thenCompose($ -> CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-                                .orTimeout(30, TimeUnit.SECONDS))
+                                .orTimeout(30, TimeUnit.SECONDS)
+                                .whenComplete(($$, throwable) -> {
+                                    // The timeout only fails the combined future, stop the partitions that are still running
+                                    if (throwable instanceof TimeoutException) token.cancel();
+                                }))
                         .thenApplyAsync($ -> {
                             List<EntryStack<?>> list = new ArrayList<>();
                             
-                            if (manager.filter == filter) {
-                                for (CompletableFuture<List<EntryStack<?>>> future : futures) {
-                                    List<EntryStack<?>> now = future.getNow(null);
-                                    if (now != null) list.addAll(now);
-                                }
-                            } else {
-                                throw new CancellationException();
+                            token.throwIfCancelled();
+                            for (CompletableFuture<List<EntryStack<?>>> future : futures) {
+                                List<EntryStack<?>> now = future.getNow(null);
+                                if (now != null) list.addAll(now);
                             }
                             
                             return list;
-                        }, executor)
+                        }, scheduler.executor())
                         .thenApply(result -> {
                             return new AbstractMap.SimpleImmutableEntry<>(result, filter);
                         });
@@ -199,10 +276,10 @@ public class AsyncSearchManager {
                 List<EntryStack<?>> list = new ArrayList<>();
                 
                 for (EntryStack<?> stack : stacks) {
-                    if (filter.test(stack) && additionalPredicate.test(stack)) {
+                    if (isCandidate(candidates, stack) && filter.test(stack) && additionalPredicate.test(stack)) {
                         list.add(transformer.apply(stack));
                     }
-                    if (manager.filter != filter) throw new CancellationException();
+                    token.throwIfCancelled();
                 }
                 
                 return CompletableFuture.completedFuture(new AbstractMap.SimpleImmutableEntry<>(list, filter));
@@ -212,6 +289,53 @@ public class AsyncSearchManager {
         return CompletableFuture.completedFuture(new AbstractMap.SimpleImmutableEntry<>(Lists.newArrayList(), filter));
     }
     
+    private static class PartialCollector {
+        private final List<CompletableFuture<List<EntryStack<?>>>> futures;
+        private final PartialResults partialResults;
+        private final SearchFilter filter;
+        private final SearchCancellationToken token;
+        private final List<EntryStack<?>> results = new ArrayList<>();
+        private int completed;
+        
+        private PartialCollector(List<CompletableFuture<List<EntryStack<?>>>> futures, PartialResults partialResults, SearchFilter filter, SearchCancellationToken token) {
+            this.futures = futures;
+            this.partialResults = partialResults;
+            this.filter = filter;
+            this.token = token;
+        }
+        
+        private synchronized void advance() {
+            int before = completed;
+            while (completed < futures.size()) {
+                CompletableFuture<List<EntryStack<?>>> future = futures.get(partialResults.fromEnd() ? futures.size() - 1 - completed : completed);
+                List<EntryStack<?>> now = future.isDone() && !future.isCompletedExceptionally() ? future.getNow(null) : null;
+                if (now == null) break;
+                if (partialResults.fromEnd()) {
+                    results.addAll(0, now);
+                } else {
+                    results.addAll(now);
+                }
+                completed++;
+            }
+            
+            // The complete result is published by the search itself
+            if (completed > before && completed < futures.size() && !results.isEmpty() && !token.isCancelled()) {
+                partialResults.consumer().accept(Collections.unmodifiableList(new ArrayList<>(results)), filter);
+            }
+        }
+    }
+    
+    private static boolean isSameInputMethod(SearchFilter filter, SearchFilter other) {
+        if (filter instanceof SearchProviderImpl.SearchFilterImpl filterImpl && other instanceof SearchProviderImpl.SearchFilterImpl otherImpl) {
+            return filterImpl.getInputMethod() == otherImpl.getInputMethod();
+        }
+        return false;
+    }
+    
+    private static boolean isCandidate(@Nullable LongPredicate candidates, EntryStack<?> stack) {
+        return candidates == null || candidates.test(EntryStacks.hashExact(stack));
+    }
+    
     public boolean matches(EntryStack<?> stack) {
         return filter.test(stack);
     }
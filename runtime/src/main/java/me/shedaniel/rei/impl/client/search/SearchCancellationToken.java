@@ -0,0 +1,70 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.shedaniel.rei.impl.client.search;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * A cooperative cancellation flag shared by every task of a search, long-running loops are expected to poll it.
+ * A token is also cancelled when its parent is.
+ */
+@ApiStatus.Internal
+@Environment(EnvType.CLIENT)
+public final class SearchCancellationToken {
+    public static final SearchCancellationToken NONE = new SearchCancellationToken(null);
+    @Nullable
+    private final SearchCancellationToken parent;
+    private volatile boolean cancelled;
+    
+    private SearchCancellationToken(@Nullable SearchCancellationToken parent) {
+        this.parent = parent;
+    }
+    
+    public static SearchCancellationToken create() {
+        return new SearchCancellationToken(null);
+    }
+    
+    public SearchCancellationToken child() {
+        return new SearchCancellationToken(this);
+    }
+    
+    public void cancel() {
+        if (this == NONE) throw new UnsupportedOperationException("Cannot cancel the empty token!");
+        this.cancelled = true;
+    }
+    
+    public boolean isCancelled() {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+    
+    public void throwIfCancelled() {
+        if (isCancelled()) throw new CancellationException();
+    }
+}
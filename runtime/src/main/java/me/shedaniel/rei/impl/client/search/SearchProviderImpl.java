@@ -24,6 +24,7 @@
 package me.shedaniel.rei.impl.client.search;
 
 import com.google.common.base.Suppliers;
+import me.shedaniel.rei.api.client.config.ConfigObject;
 import me.shedaniel.rei.api.client.search.SearchFilter;
 import me.shedaniel.rei.api.client.search.SearchProvider;
 import me.shedaniel.rei.api.client.search.method.InputMethod;
@@ -31,15 +32,19 @@ import me.shedaniel.rei.api.common.entry.EntryStack;
 import me.shedaniel.rei.impl.client.search.argument.AlternativeArgument;
 import me.shedaniel.rei.impl.client.search.argument.Argument;
 import me.shedaniel.rei.impl.client.search.argument.CompoundArgument;
+import me.shedaniel.rei.impl.client.search.argument.SearchMatcher;
 import me.shedaniel.rei.impl.client.search.argument.type.ArgumentType;
+import me.shedaniel.rei.impl.client.search.method.DefaultInputMethod;
 import me.shedaniel.rei.impl.client.util.CrashReportUtils;
 import me.shedaniel.rei.impl.common.InternalLogger;
 import net.minecraft.CrashReport;
 import net.minecraft.CrashReportCategory;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.LongPredicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -58,6 +63,7 @@ public class SearchProviderImpl implements SearchProvider {
         private final InputMethod<?> inputMethod;
         private final Supplier<List<CompoundArgument>> arguments;
         private final Supplier<List<ArgumentType<?, ?>>> argumentTypes;
+        private final Supplier<SearchMatcher<?>> matcher;
         
         public SearchFilterImpl(String filter, InputMethod<?> inputMethod) {
             this.filter = filter;
@@ -69,13 +75,20 @@ public class SearchProviderImpl implements SearchProvider {
                     .map(Argument::getArgument)
                     .distinct()
                     .collect(Collectors.toList()));
+            this.matcher = Suppliers.memoize(() -> {
+                SearchMatcher<?> matcher = SearchMatcher.compile(this.arguments.get(), inputMethod);
+                if (ConfigObject.getInstance().doDebugSearchTimeRequired()) {
+                    InternalLogger.getInstance().info("Planned search \"%s\": %s", filter, matcher);
+                }
+                return matcher;
+            });
             InternalLogger.getInstance().debug("Created search filter with %s using %s", filter, inputMethod.getName().getString());
         }
         
         @Override
         public boolean test(EntryStack<?> stack) {
             try {
-                return Argument.matches(stack, arguments.get(), inputMethod);
+                return matcher.get().matches(stack);
             } catch (Throwable throwable) {
                 CrashReport report = CrashReportUtils.essential(throwable, "Testing entry with search filter");
                 CrashReportCategory category = report.addCategory("Search entry details");
@@ -102,6 +115,23 @@ public class SearchProviderImpl implements SearchProvider {
             return argumentTypes.get();
         }
         
+        @Nullable
+        public LongPredicate findCandidates() {
+            return Argument.findCandidates(arguments.get(), inputMethod);
+        }
+        
+        public InputMethod<?> getInputMethod() {
+            return inputMethod;
+        }
+        
+        /**
+         * Returns whether the results of this filter are a subset of the results of the previous filter.
+         */
+        public boolean isNarrowing(SearchFilterImpl previous) {
+            if (inputMethod != previous.inputMethod || inputMethod != DefaultInputMethod.INSTANCE) return false;
+            return Argument.isNarrowing(arguments.get(), previous.arguments.get());
+        }
+        
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -0,0 +1,223 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.shedaniel.rei.impl.client.search;
+
+import me.shedaniel.rei.api.client.config.ConfigObject;
+import me.shedaniel.rei.impl.common.InternalLogger;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The shared work-stealing scheduler of every search task, backed by a {@link ForkJoinPool}
+ * with the parallelism from {@link ConfigObject#getAsyncSearchParallelism()}.
+ * <p>
+ * Tasks are bound to a {@link SearchCancellationToken}, tasks of a cancelled search are skipped if they have not started yet,
+ * and the CPU time of those that have is accounted as wasted.
+ */
+@ApiStatus.Internal
+@Environment(EnvType.CLIENT)
+public final class SearchScheduler {
+    private static final SearchScheduler INSTANCE = new SearchScheduler();
+    private final AtomicInteger threadId = new AtomicInteger(0);
+    private final LongAdder completedTasks = new LongAdder();
+    private final LongAdder cancelledTasks = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+    private final LongAdder wastedCpuNanos = new LongAdder();
+    @Nullable
+    private final ThreadMXBean threadBean;
+    @Nullable
+    private volatile ForkJoinPool pool;
+    
+    private SearchScheduler() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        this.threadBean = threadBean.isCurrentThreadCpuTimeSupported() ? threadBean : null;
+    }
+    
+    public static SearchScheduler getInstance() {
+        return INSTANCE;
+    }
+    
+    public static int getParallelism() {
+        int parallelism = ConfigObject.getInstance().getAsyncSearchParallelism();
+        return parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+    
+    private ForkJoinPool getPool() {
+        int parallelism = getParallelism();
+        ForkJoinPool pool = this.pool;
+        if (pool == null || pool.getParallelism() != parallelism) {
+            synchronized (this) {
+                pool = this.pool;
+                if (pool == null || pool.getParallelism() != parallelism) {
+                    ForkJoinPool previous = pool;
+                    this.pool = pool = new ForkJoinPool(parallelism, this::createThread, ($, exception) -> {
+                        if (!(exception instanceof CancellationException)) {
+                            InternalLogger.getInstance().throwException(exception);
+                        }
+                    }, false);
+                    // Queued tasks still run on the previous pool, its threads exit once it is idle
+                    if (previous != null) previous.shutdown();
+                }
+            }
+        }
+        return pool;
+    }
+    
+    private ForkJoinWorkerThread createThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {};
+        thread.setName("REI-Search-" + threadId.getAndIncrement());
+        thread.setDaemon(true);
+        thread.setContextClassLoader(SearchScheduler.class.getClassLoader());
+        return thread;
+    }
+    
+    /**
+     * Returns an executor for continuations of search tasks, these are not accounted in the metrics.
+     */
+    public Executor executor() {
+        return command -> getPool().execute(command);
+    }
+    
+    public <T> CompletableFuture<T> supply(SearchCancellationToken token, Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        getPool().execute(() -> {
+            if (token.isCancelled() || future.isDone()) {
+                cancelledTasks.increment();
+                future.cancel(false);
+                return;
+            }
+            long start = cpuTime();
+            try {
+                future.complete(task.get());
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+            } finally {
+                account(token.isCancelled() || future.isCancelled(), cpuTime() - start);
+            }
+        });
+        return future;
+    }
+    
+    public CompletableFuture<Void> run(SearchCancellationToken token, Runnable task) {
+        return supply(token, () -> {
+            task.run();
+            return null;
+        });
+    }
+    
+    /**
+     * Runs the task over {@code [0, size)} split into ranges of at most {@code grain}, and waits for every range.
+     * Idle threads steal ranges, and a thread of this scheduler waiting here helps running them.
+     * Ranges that have not started when the token is cancelled are skipped.
+     */
+    public void forRange(SearchCancellationToken token, int size, int grain, RangeTask task) {
+        if (size <= 0) return;
+        RangeAction action = new RangeAction(token, task, 0, size, Math.max(1, grain));
+        ForkJoinPool pool = getPool();
+        if (Thread.currentThread() instanceof ForkJoinWorkerThread thread && thread.getPool() == pool) {
+            action.invoke();
+        } else {
+            pool.invoke(action);
+        }
+    }
+    
+    private long cpuTime() {
+        return threadBean != null ? threadBean.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+    
+    private void account(boolean cancelled, long nanos) {
+        cpuNanos.add(nanos);
+        if (cancelled) {
+            cancelledTasks.increment();
+            wastedCpuNanos.add(nanos);
+        } else {
+            completedTasks.increment();
+        }
+    }
+    
+    public Metrics getMetrics() {
+        ForkJoinPool pool = this.pool;
+        return new Metrics(getParallelism(), pool == null ? 0 : pool.getActiveThreadCount(),
+                pool == null ? 0 : pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount(),
+                completedTasks.sum(), cancelledTasks.sum(), cpuNanos.sum(), wastedCpuNanos.sum());
+    }
+    
+    @FunctionalInterface
+    public interface RangeTask {
+        void run(int start, int end);
+    }
+    
+    /**
+     * A snapshot of the scheduler metrics, CPU times are in nanoseconds and fallback to wall time
+     * if the JVM does not support measuring thread CPU time.
+     */
+    public record Metrics(int parallelism, int activeThreads, long queuedTasks, long completedTasks, long cancelledTasks,
+                          long cpuNanos, long wastedCpuNanos) {
+    }
+    
+    private class RangeAction extends RecursiveAction {
+        private final SearchCancellationToken token;
+        private final RangeTask task;
+        private final int start;
+        private final int end;
+        private final int grain;
+        
+        private RangeAction(SearchCancellationToken token, RangeTask task, int start, int end, int grain) {
+            this.token = token;
+            this.task = task;
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+        }
+        
+        @Override
+        protected void compute() {
+            if (token.isCancelled()) {
+                cancelledTasks.increment();
+                return;
+            }
+            if (end - start > grain) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new RangeAction(token, task, start, middle, grain), new RangeAction(token, task, middle, end, grain));
+                return;
+            }
+            long time = cpuTime();
+            try {
+                task.run(start, end);
+            } finally {
+                account(token.isCancelled(), cpuTime() - time);
+            }
+        }
+    }
+}
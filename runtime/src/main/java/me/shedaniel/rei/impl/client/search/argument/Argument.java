@@ -24,19 +24,11 @@
 package me.shedaniel.rei.impl.client.search.argument;
 
 import com.google.common.base.MoreObjects;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
-import it.unimi.dsi.fastutil.Pair;
+import dev.architectury.platform.Platform;
 import it.unimi.dsi.fastutil.ints.IntIntMutablePair;
 import it.unimi.dsi.fastutil.ints.IntIntPair;
-import it.unimi.dsi.fastutil.ints.IntList;
-import it.unimi.dsi.fastutil.longs.Long2ObjectArrayMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.shorts.Short2ObjectMap;
-import it.unimi.dsi.fastutil.shorts.Short2ObjectMaps;
-import it.unimi.dsi.fastutil.shorts.Short2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
 import me.shedaniel.rei.api.client.config.ConfigObject;
 import me.shedaniel.rei.api.client.gui.config.SearchMode;
 import me.shedaniel.rei.api.client.registry.entry.EntryRegistry;
@@ -44,10 +36,13 @@ import me.shedaniel.rei.api.client.search.method.CharacterUnpackingInputMethod;
 import me.shedaniel.rei.api.client.search.method.InputMethod;
 import me.shedaniel.rei.api.common.entry.EntryStack;
 import me.shedaniel.rei.api.common.util.CollectionUtils;
-import me.shedaniel.rei.api.common.util.EntryStacks;
 import me.shedaniel.rei.impl.client.search.IntRange;
+import me.shedaniel.rei.impl.client.search.SearchCancellationToken;
+import me.shedaniel.rei.impl.client.search.SearchScheduler;
 import me.shedaniel.rei.impl.client.search.argument.type.ArgumentType;
 import me.shedaniel.rei.impl.client.search.argument.type.ArgumentTypesRegistry;
+import me.shedaniel.rei.impl.client.search.argument.type.ModArgumentType;
+import me.shedaniel.rei.impl.client.search.method.DefaultInputMethod;
 import me.shedaniel.rei.impl.client.search.result.ArgumentApplicableResult;
 import me.shedaniel.rei.impl.client.util.ThreadCreator;
 import me.shedaniel.rei.impl.common.InternalLogger;
@@ -63,8 +58,9 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.BooleanSupplier;
+import java.util.function.LongPredicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -72,9 +68,20 @@ import java.util.regex.Pattern;
 @Environment(EnvType.CLIENT)
 public class Argument<T, R> {
     private static final ExecutorService EXECUTOR_SERVICE = new ThreadCreator("REI-ArgumentCache").asService();
-    private static final Short2ObjectMap<Long2ObjectMap<Object>> SEARCH_CACHE = Short2ObjectMaps.synchronize(new Short2ObjectOpenHashMap<>());
-    private static final Object NO_CACHE = new Object();
+    /**
+     * Cached data of stacks that are searched before they are prepared, these are merged into the snapshot on the next preparation.
+     */
+    private static final Map<ArgumentType<?, ?>, Map<Long, Object>> UNPREPARED_CACHE = new ConcurrentHashMap<>();
+    private static volatile SearchCache searchCache = SearchCache.EMPTY;
+    private static final SearchCacheStorage STORAGE = new SearchCacheStorage(Platform.getConfigFolder().resolve("roughlyenoughitems/search_cache.bin"));
+    /**
+     * Whether data of a persistable argument type was computed since the cache was last loaded.
+     */
+    private static volatile boolean persistableDirty = false;
     private static final AtomicReference<String> lastLanguage = new AtomicReference<>();
+    private static final AtomicInteger cacheGeneration = new AtomicInteger();
+    @Nullable
+    private static volatile SearchIndex searchIndex = null;
     private ArgumentType<T, R> argumentType;
     private String text;
     private T filterData;
@@ -93,25 +100,110 @@ public class Argument<T, R> {
     }
     
     public static void resetCache(boolean cache) {
-        SEARCH_CACHE.clear();
+        resetCache(cache, true);
+    }
+    
+    /**
+     * Resets the search cache, and prepares it for every stack if {@code cache} is {@code true}.
+     *
+     * @param cache     whether to prepare the cache
+     * @param persisted whether to start from the cache persisted from the previous session
+     */
+    public static void resetCache(boolean cache, boolean persisted) {
+        cacheGeneration.incrementAndGet();
+        searchCache = SearchCache.EMPTY;
+        UNPREPARED_CACHE.clear();
+        PhoneticText.invalidateAll();
+        searchIndex = null;
         if (cache) {
-            Argument.prepareFilter(new AbstractCollection<>() {
-                @Override
-                public Iterator<EntryStack<?>> iterator() {
-                    return Iterators.transform(EntryRegistry.getInstance().getPreFilteredList().iterator(),
-                            EntryStack::normalize);
-                }
-                
-                @Override
-                public int size() {
-                    return EntryRegistry.getInstance().getPreFilteredList().size();
-                }
-            }, ArgumentTypesRegistry.ARGUMENT_TYPE_LIST, () -> true, EXECUTOR_SERVICE);
+            List<HashedEntryStackWrapper> wrappers = CollectionUtils.map(EntryRegistry.getInstance().getPreFilteredList(),
+                    stack -> new HashedEntryStackWrapper(stack.normalize()));
+            String language = Minecraft.getInstance().options.languageCode;
+            long fingerprint = SearchCacheStorage.fingerprint();
+            Long2LongMap keys = SearchCacheStorage.persistentKeys(wrappers);
+            if (persisted) {
+                loadCache(keys, language, fingerprint);
+            }
+            persistableDirty = false;
+            Argument.prepareFilter(CollectionUtils.map(wrappers, HashedEntryStackWrapper::unwrap), ArgumentTypesRegistry.ARGUMENT_TYPE_LIST);
+            SearchCache prepared = searchCache;
+            if (persistableDirty && !prepared.isEmpty()) {
+                persistableDirty = false;
+                EXECUTOR_SERVICE.execute(() -> STORAGE.save(prepared, language, fingerprint, keys));
+            }
+            buildIndex(wrappers);
+        }
+    }
+    
+    private static void loadCache(Long2LongMap keys, String language, long fingerprint) {
+        long start = Util.getEpochMillis();
+        SearchCache loaded = STORAGE.load(language, fingerprint, keys);
+        if (loaded != null && searchCache.isEmpty()) {
+            searchCache = loaded;
+            InternalLogger.getInstance().log(ConfigObject.getInstance().doDebugSearchTimeRequired() ? Level.INFO : Level.TRACE, "Loaded " + loaded.size() + " stacks from the persisted search cache in " + (Util.getEpochMillis() - start) + "ms");
+        }
+    }
+    
+    private static void buildIndex(List<HashedEntryStackWrapper> stacks) {
+        long start = Util.getEpochMillis();
+        SearchIndex index = SearchIndex.build(stacks, ArgumentTypesRegistry.ARGUMENT_TYPE_LIST, searchCache);
+        searchIndex = index;
+        InternalLogger.getInstance().log(ConfigObject.getInstance().doDebugSearchTimeRequired() ? Level.INFO : Level.TRACE, "Built search index of " + index.size() + " stacks with " + index.getGramCount() + " trigrams in " + (Util.getEpochMillis() - start) + "ms");
+    }
+    
+    /**
+     * Returns a predicate that rejects stacks that can never match the arguments, based on the search index.
+     * Returns {@code null} if the arguments cannot be answered by the index, in which case every stack should be tested.
+     * Regex, inverted and input method arguments are not indexed, and fallback to testing every stack.
+     */
+    @Nullable
+    public static LongPredicate findCandidates(List<CompoundArgument> compoundArguments, InputMethod<?> inputMethod) {
+        SearchIndex index = searchIndex;
+        if (index == null || compoundArguments.isEmpty() || inputMethod != DefaultInputMethod.INSTANCE) return null;
+        BitSet candidates = new BitSet(index.size());
+        
+        for (CompoundArgument arguments : compoundArguments) {
+            BitSet compoundCandidates = null;
+            
+            for (AlternativeArgument alternativeArgument : arguments) {
+                BitSet alternativeCandidates = findCandidates(index, alternativeArgument, inputMethod);
+                if (alternativeCandidates == null) continue;
+                if (compoundCandidates == null) compoundCandidates = alternativeCandidates;
+                else compoundCandidates.and(alternativeCandidates);
+            }
+            
+            if (compoundCandidates == null) return null;
+            candidates.or(compoundCandidates);
+        }
+        
+        return index.toPredicate(candidates);
+    }
+    
+    @Nullable
+    private static BitSet findCandidates(SearchIndex index, AlternativeArgument alternativeArgument, InputMethod<?> inputMethod) {
+        if (alternativeArgument.isEmpty()) return null;
+        BitSet candidates = null;
+        
+        for (Argument<?, ?> argument : alternativeArgument) {
+            if (!argument.isRegular()) return null;
+            BitSet argumentCandidates;
+            if (argument.getArgument() == ModArgumentType.INSTANCE) {
+                argumentCandidates = index.queryNamespaces(ModArgumentType.INSTANCE.matchNamespaces(argument.getText(), inputMethod));
+            } else if (index.isIndexed(argument.getArgument())) {
+                argumentCandidates = index.query(argument.getArgument(), argument.getText());
+            } else {
+                return null;
+            }
+            if (argumentCandidates == null) return null;
+            if (candidates == null) candidates = argumentCandidates;
+            else candidates.or(argumentCandidates);
         }
+        
+        return candidates;
     }
     
     public static boolean hasCache() {
-        return !SEARCH_CACHE.isEmpty();
+        return !searchCache.isEmpty() || !UNPREPARED_CACHE.isEmpty();
     }
     
     public int start() {
@@ -202,95 +294,112 @@ public class Argument<T, R> {
         }
     }
     
-    public static boolean matches(EntryStack<?> stack, List<CompoundArgument> compoundArguments, InputMethod<?> inputMethod) {
-        if (compoundArguments.isEmpty()) return true;
+    /**
+     * Returns a number changing every time the search cache is reset, results matched before a reset must not be reused.
+     */
+    public static int getCacheGeneration() {
+        return cacheGeneration.get();
+    }
+    
+    /**
+     * Resets the search cache if the language changed since the last search, as the cached data is localized.
+     */
+    public static void checkLanguage() {
         String newLanguage = Minecraft.getInstance().options.languageCode;
         if (!Objects.equals(lastLanguage.getAndSet(newLanguage), newLanguage)) {
             resetCache(false);
         }
+    }
+    
+    /**
+     * Returns whether every stack matching {@code arguments} also matches {@code previous},
+     * in which case a search can be refined from the results of {@code previous}.
+     */
+    public static boolean isNarrowing(List<CompoundArgument> arguments, List<CompoundArgument> previous) {
+        if (previous.isEmpty()) return true;
+        if (arguments.isEmpty()) return false;
         
         a:
-        for (CompoundArgument arguments : compoundArguments) {
-            for (AlternativeArgument argument : arguments) {
-                if (!matches(stack, argument, inputMethod)) {
+        for (CompoundArgument compound : arguments) {
+            for (CompoundArgument previousCompound : previous) {
+                if (isNarrowing(compound, previousCompound)) {
                     continue a;
                 }
             }
             
-            return true;
+            return false;
         }
         
-        return false;
+        return true;
     }
     
-    private static <T> boolean matches(EntryStack<?> stack, AlternativeArgument alternativeArgument, InputMethod<T> inputMethod) {
-        if (alternativeArgument.isEmpty()) return true;
-        long hashExact = EntryStacks.hashExact(stack);
-        ResultSinkImpl<T> sink = new ResultSinkImpl<>(inputMethod);
-        
-        for (Argument<?, ?> argument : alternativeArgument) {
-            sink.filters = inputMethod.expendFilter(argument.getText());
-            if (matches(argument.getArgument(), stack, hashExact, argument.filterData, sink) == argument.isRegular()) {
-                return true;
+    private static boolean isNarrowing(CompoundArgument compound, CompoundArgument previous) {
+        a:
+        for (AlternativeArgument previousAlternative : previous) {
+            if (previousAlternative.isEmpty()) continue;
+            for (AlternativeArgument alternative : compound) {
+                if (isNarrowing(alternative, previousAlternative)) {
+                    continue a;
+                }
             }
+            
+            return false;
         }
         
-        return false;
+        return true;
     }
     
-    private static Long2ObjectMap<Object> getSearchCache(ArgumentType<?, ?> argumentType) {
-        short argumentIndex = (short) argumentType.getIndex();
-        Long2ObjectMap<Object> map = SEARCH_CACHE.get(argumentIndex);
-        if (map == null) {
-            SEARCH_CACHE.put(argumentIndex, map = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>()));
+    private static boolean isNarrowing(AlternativeArgument alternative, AlternativeArgument previous) {
+        if (alternative.isEmpty()) return false;
+        
+        a:
+        for (Argument<?, ?> argument : alternative) {
+            for (Argument<?, ?> previousArgument : previous) {
+                if (isNarrowing(argument, previousArgument)) {
+                    continue a;
+                }
+            }
+            
+            return false;
         }
-        return map;
+        
+        return true;
     }
     
-    private static <T, R, B> boolean matches(ArgumentType<T, B> argumentType, EntryStack<?> stack, long hashExact, R filterData, ResultSinkImpl<?> sink) {
-        Long2ObjectMap<Object> map = getSearchCache(argumentType);
-        Object value = map.get(hashExact);
-        if (value == null) {
-            value = argumentType.cacheData(stack);
-            map.put(hashExact, value == null ? NO_CACHE : value);
-        }
-        sink.matches = false;
-        argumentType.matches(value == NO_CACHE ? null : (B) value, stack, (T) filterData, sink);
-        return sink.matches;
+    private static boolean isNarrowing(Argument<?, ?> argument, Argument<?, ?> previous) {
+        if (argument.getArgument() != previous.getArgument() || argument.isRegular() != previous.isRegular()) return false;
+        if (!argument.getArgument().isTextMatching()) return false;
+        // A longer text can only match less, while a longer inverted text can only match more
+        return argument.isRegular() ? argument.getText().contains(previous.getText()) : previous.getText().contains(argument.getText());
     }
     
-    private static class ResultSinkImpl<T> implements ArgumentType.ResultSink {
-        private final InputMethod<T> inputMethod;
-        private boolean matches;
-        private Iterable<T> filters;
-        
-        public ResultSinkImpl(InputMethod<T> inputMethod) {
-            this.inputMethod = inputMethod;
-        }
-        
-        @Override
-        public boolean testTrue() {
-            return matches = true;
-        }
-        
-        @Override
-        public boolean testString(String text) {
-            if (matches) return true;
-            if (inputMethod instanceof CharacterUnpackingInputMethod im) {
-                for (T filter : filters) {
-                    if (InputMethodMatcher.contains(im, IntList.of(text.codePoints().toArray()), (IntList) filter)) {
-                        return matches = true;
-                    }
-                }
-            } else {
-                for (T filter : filters) {
-                    if (inputMethod.contains(text, filter)) {
-                        return matches = true;
-                    }
-                }
+    static SearchCache getSearchCache() {
+        return searchCache;
+    }
+    
+    @Nullable
+    static SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+    
+    /**
+     * Returns the cached data of the stack from the given snapshot, or computes it if the stack is not prepared yet.
+     *
+     * @param slot the slot of the stack in {@code cache}
+     * @return the cached data, or {@link SearchCache#NO_CACHE} if the argument type does not have data for the stack
+     */
+    static Object getCachedData(ArgumentType<?, ?> argumentType, EntryStack<?> stack, long hashExact, SearchCache cache, int slot) {
+        Object value = cache.get(argumentType, slot);
+        if (value == null) {
+            Map<Long, Object> map = UNPREPARED_CACHE.computeIfAbsent(argumentType, $ -> new ConcurrentHashMap<>());
+            value = map.get(hashExact);
+            if (value == null) {
+                value = argumentType.cacheData(stack);
+                if (value == null) value = SearchCache.NO_CACHE;
+                map.put(hashExact, value);
             }
-            return false;
         }
+        return value;
     }
     
     public static Long prepareStart = null;
@@ -299,24 +408,28 @@ public class Argument<T, R> {
     public static IntIntPair[] currentStages = null;
     
     public static void prepareFilter(Collection<EntryStack<?>> stacks, Collection<ArgumentType<?, ?>> argumentTypes) {
-        Argument.prepareFilter(stacks, argumentTypes, () -> true, null);
+        Argument.prepareFilter(stacks, argumentTypes, SearchCancellationToken.NONE);
     }
     
-    public static void prepareFilter(Collection<EntryStack<?>> stacks, Collection<ArgumentType<?, ?>> argumentTypes, BooleanSupplier isValid, @Nullable Executor executor) {
+    /**
+     * Prepares the cached data of the stacks for the argument types on the {@link SearchScheduler},
+     * stopping early once the token is cancelled. Partially prepared data is still published.
+     */
+    public static void prepareFilter(Collection<EntryStack<?>> stacks, Collection<ArgumentType<?, ?>> argumentTypes, SearchCancellationToken token) {
         if (prepareStage != null || currentStages != null) return;
         try {
             prepareStart = Util.getEpochMillis();
-            Long2ObjectMap<Object>[] caches = CollectionUtils.map(argumentTypes, Argument::getSearchCache).toArray(Long2ObjectMap[]::new);
+            SearchCache cache = searchCache;
             prepareStacks = CollectionUtils.mapAndFilter(stacks, stack -> {
-                for (Long2ObjectMap<Object> cache : caches) {
-                    if (!cache.containsKey(stack.hashExact())) {
+                for (ArgumentType<?, ?> argumentType : argumentTypes) {
+                    if (cache.get(argumentType, stack.hashExact()) == null) {
                         return true;
                     }
                 }
                 
                 return false;
             }, HashedEntryStackWrapper::new);
-            if (prepareStacks.isEmpty() && !isValid.getAsBoolean()) {
+            if (prepareStacks.isEmpty() && token.isCancelled()) {
                 return;
             }
             InternalLogger.getInstance().log(ConfigObject.getInstance().doDebugSearchTimeRequired() ? Level.INFO : Level.TRACE, "Preparing " + (prepareStacks.size() * argumentTypes.size()) + " stacks for search arguments");
@@ -324,72 +437,65 @@ public class Argument<T, R> {
             currentStages = new IntIntPair[argumentTypes.size()];
             int searchPartitionSize = ConfigObject.getInstance().getAsyncSearchPartitionSize();
             boolean async = ConfigObject.getInstance().shouldAsyncSearch() && prepareStacks.size() > searchPartitionSize * 4;
-            List<CompletableFuture<Long2ObjectMap<Object>>> futures = Lists.newArrayList();
-            List<Pair<ArgumentType<?, ?>, CompletableFuture<Long2ObjectMap<Object>>>> pairs = Lists.newArrayList();
+            SearchCache.Builder builder = SearchCache.builder(cache);
+            List<HashedEntryStackWrapper> preparing = prepareStacks;
+            int[] slots = new int[preparing.size()];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = builder.slot(preparing.get(i).hashExact());
+            }
             
-            for (ArgumentType<?, ?> argumentType : argumentTypes) {
+            List<ArgumentType<?, ?>> types = new ArrayList<>(argumentTypes);
+            // Compile the phonetic spellings of indexable texts ahead of time, as searches with the active input method match against them
+            CharacterUnpackingInputMethod phonetic = InputMethod.active() instanceof CharacterUnpackingInputMethod method ? method : null;
+            Object[][] columns = new Object[types.size()][];
+            List<Map<Long, Object>> unprepared = new ArrayList<>(types.size());
+            for (int type = 0; type < types.size(); type++) {
+                ArgumentType<?, ?> argumentType = types.get(type);
                 prepareStage.first(prepareStage.firstInt() + 1);
-                Long2ObjectMap<Object> map = getSearchCache(argumentType);
-                IntIntPair currentStage = currentStages[prepareStage.firstInt() - 1] = new IntIntMutablePair(0, prepareStacks.size());
-                if (!isValid.getAsBoolean()) return;
+                columns[type] = builder.column(argumentType);
+                unprepared.add(UNPREPARED_CACHE.getOrDefault(argumentType, Map.of()));
+                currentStages[type] = new IntIntMutablePair(0, prepareStacks.size());
                 
-                if (async) {
-                    for (Collection<HashedEntryStackWrapper> partitionStacks : CollectionUtils.partition(prepareStacks, searchPartitionSize)) {
-                        CompletableFuture<Long2ObjectMap<Object>> future = CompletableFuture.supplyAsync(() -> {
-                            Long2ObjectMap<Object> out = new Long2ObjectArrayMap<>(searchPartitionSize + 1);
-                            int i = 0;
-                            for (HashedEntryStackWrapper stack : partitionStacks) {
-                                if (map.get(stack.hashExact()) == null) {
-                                    Object data = argumentType.cacheData(stack.unwrap());
-                                    
-                                    if (data != null) {
-                                        out.put(stack.hashExact(), data);
-                                    }
-                                }
-                                if (i++ % 40 == 0) if (!isValid.getAsBoolean()) return Long2ObjectMaps.emptyMap();
-                            }
-                            if (!isValid.getAsBoolean()) return Long2ObjectMaps.emptyMap();
-                            return out;
-                        }, Objects.requireNonNullElse(executor, EXECUTOR_SERVICE)).whenComplete((objectLong2ObjectMap, throwable) -> {
-                            currentStage.first(currentStage.firstInt() + partitionStacks.size());
-                        });
-                        futures.add(future);
-                        pairs.add(Pair.of(argumentType, future));
-                    }
-                } else {
-                    for (HashedEntryStackWrapper stack : prepareStacks) {
+                // Stop preparing once cancelled, but still publish what has been prepared so far
+                if (!async && !token.isCancelled()) {
+                    IntIntPair currentStage = currentStages[type];
+                    for (int i = 0; i < slots.length; i++) {
                         currentStage.first(currentStage.firstInt() + 1);
-                        
-                        if (map.get(stack.hashExact()) == null) {
-                            Object data = argumentType.cacheData(stack.unwrap());
-                            
-                            if (data != null) {
-                                map.put(stack.hashExact(), data);
-                            }
-                        }
+                        prepareData(argumentType, preparing.get(i), columns[type], slots[i], unprepared.get(type), phonetic);
+                        if (i % 40 == 0 && token.isCancelled()) break;
                     }
                 }
             }
             
             if (async) {
-                try {
-                    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
-                } catch (ExecutionException | TimeoutException e) {
-                    e.printStackTrace();
-                } catch (InterruptedException ignore) {
-                } finally {
-                    int sum = 0;
-                    for (Pair<ArgumentType<?, ?>, CompletableFuture<Long2ObjectMap<Object>>> pair : pairs) {
-                        Long2ObjectMap<Object> now = pair.second().getNow(null);
-                        if (now != null) {
-                            getSearchCache(pair.left()).putAll(now);
-                            sum += now.size();
+                // Every argument type is split into partitions, and the partitions of every type are scheduled together
+                int partitions = (slots.length + searchPartitionSize - 1) / searchPartitionSize;
+                SearchScheduler.getInstance().forRange(token, types.size() * partitions, 1, (from, to) -> {
+                    for (int job = from; job < to; job++) {
+                        int type = job / partitions;
+                        int start = (job % partitions) * searchPartitionSize;
+                        int end = Math.min(slots.length, start + searchPartitionSize);
+                        for (int i = start; i < end; i++) {
+                            prepareData(types.get(type), preparing.get(i), columns[type], slots[i], unprepared.get(type), phonetic);
+                            if ((i - start) % 40 == 0 && token.isCancelled()) return;
+                        }
+                        IntIntPair currentStage = currentStages[type];
+                        synchronized (currentStage) {
+                            currentStage.first(currentStage.firstInt() + end - start);
                         }
                     }
-                    InternalLogger.getInstance().log(ConfigObject.getInstance().doDebugSearchTimeRequired() ? Level.INFO : Level.TRACE, "Prepared " + sum + " / " + (prepareStacks.size() * argumentTypes.size()) + " stacks for search arguments in " + (Util.getEpochMillis() - prepareStart) + "ms");
-                }
-            } else {
-                InternalLogger.getInstance().log(ConfigObject.getInstance().doDebugSearchTimeRequired() ? Level.INFO : Level.TRACE, "Prepared " + (prepareStacks.size() * argumentTypes.size()) + " stacks for search arguments in " + (Util.getEpochMillis() - prepareStart) + "ms");
+                });
+            }
+            
+            SearchCache prepared = builder.build();
+            // Partially prepared columns are still published, as missing data is computed when searching,
+            // but the snapshot is dropped if the cache was reset while preparing
+            if (searchCache == cache) {
+                searchCache = prepared;
+            }
+            InternalLogger.getInstance().log(ConfigObject.getInstance().doDebugSearchTimeRequired() ? Level.INFO : Level.TRACE, "Prepared " + (prepareStacks.size() * argumentTypes.size()) + " stacks for search arguments in " + (Util.getEpochMillis() - prepareStart) + "ms");
+            if (ConfigObject.getInstance().doDebugSearchTimeRequired()) {
+                InternalLogger.getInstance().info("Search cache holds " + prepared.size() + " stacks, using roughly " + (prepared.estimateMemoryUsage() / 1024) + "KB");
             }
         } finally {
             prepareStart = null;
@@ -399,6 +505,27 @@ public class Argument<T, R> {
         }
     }
     
+    private static void prepareData(ArgumentType<?, ?> argumentType, HashedEntryStackWrapper stack, Object[] column, int slot, Map<Long, Object> unprepared,
+            @Nullable CharacterUnpackingInputMethod phonetic) {
+        if (column[slot] == null) {
+            Object data = unprepared.get(stack.hashExact());
+            if (data == null) {
+                data = argumentType.cacheData(stack.unwrap());
+                if (argumentType.isPersistable()) {
+                    persistableDirty = true;
+                }
+            }
+            column[slot] = data == null ? SearchCache.NO_CACHE : data;
+        }
+        if (phonetic != null && argumentType.isIndexable() && column[slot] != SearchCache.NO_CACHE) {
+            //noinspection unchecked
+            String text = ((ArgumentType<?, Object>) argumentType).getIndexedText(column[slot]);
+            if (text != null) {
+                PhoneticText.of(phonetic, text);
+            }
+        }
+    }
+    
     public ArgumentType<?, ?> getArgument() {
         return argumentType;
     }
@@ -411,6 +538,10 @@ public class Argument<T, R> {
         return regular;
     }
     
+    T getFilterData() {
+        return filterData;
+    }
+    
     @Override
     public String toString() {
         return String.format("Argument[%s]: name = %s, regular = %b", argumentType.getName(), text, regular);
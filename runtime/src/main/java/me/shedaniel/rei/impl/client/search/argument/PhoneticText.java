@@ -0,0 +1,191 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.shedaniel.rei.impl.client.search.argument;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import me.shedaniel.rei.api.client.search.method.CharacterUnpackingInputMethod;
+import me.shedaniel.rei.api.client.search.method.CharacterUnpackingInputMethod.ExpendedChar;
+import me.shedaniel.rei.api.client.search.method.InputMethod;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A text with the spellings of every character expanded by a {@link CharacterUnpackingInputMethod}, flattened into arrays.
+ * <p>
+ * {@link #contains(IntList)} answers the same as {@link InputMethodMatcher#contains(CharacterUnpackingInputMethod, IntList, IntList)},
+ * but simulates every start position at once, with the reachable query positions as a bitmask,
+ * instead of backtracking from every start position.
+ */
+@ApiStatus.Internal
+@Environment(EnvType.CLIENT)
+public final class PhoneticText {
+    private static final Map<InputMethod<?>, Map<String, PhoneticText>> CACHES = Collections.synchronizedMap(new WeakHashMap<>());
+    private final CharacterUnpackingInputMethod inputMethod;
+    private final int[] codePoints;
+    /**
+     * The spellings of the character at {@code i} are {@code [spellingOffsets[i], spellingOffsets[i + 1])}.
+     */
+    private final int[] spellingOffsets;
+    /**
+     * The spelling {@code k} is {@code data[spellingStarts[k], spellingStarts[k + 1])}.
+     */
+    private final int[] spellingStarts;
+    private final int[] data;
+    /**
+     * The lengths of the spelling {@code k} that end a phoneme, as a bitmask.
+     */
+    private final long[] boundaries;
+    
+    private PhoneticText(CharacterUnpackingInputMethod inputMethod, int[] codePoints, int[] spellingOffsets, int[] spellingStarts, int[] data, long[] boundaries) {
+        this.inputMethod = inputMethod;
+        this.codePoints = codePoints;
+        this.spellingOffsets = spellingOffsets;
+        this.spellingStarts = spellingStarts;
+        this.data = data;
+        this.boundaries = boundaries;
+    }
+    
+    /**
+     * Returns the compiled text, compiled texts are cached until the input method is {@link #invalidate(InputMethod) invalidated}.
+     */
+    public static PhoneticText of(CharacterUnpackingInputMethod inputMethod, String text) {
+        Map<String, PhoneticText> cache = CACHES.computeIfAbsent(inputMethod, $ -> new ConcurrentHashMap<>());
+        PhoneticText compiled = cache.get(text);
+        if (compiled == null) {
+            compiled = compile(inputMethod, text);
+            cache.put(text, compiled);
+        }
+        return compiled;
+    }
+    
+    /**
+     * Drops the compiled texts of the input method, this must be called whenever its expansions change.
+     */
+    public static void invalidate(InputMethod<?> inputMethod) {
+        CACHES.remove(inputMethod);
+    }
+    
+    public static void invalidateAll() {
+        CACHES.clear();
+    }
+    
+    public static PhoneticText compile(CharacterUnpackingInputMethod inputMethod, String text) {
+        IntArrayList codePoints = new IntArrayList(text.length());
+        IntArrayList spellingOffsets = new IntArrayList(text.length() + 1);
+        IntArrayList spellingStarts = new IntArrayList();
+        IntArrayList data = new IntArrayList();
+        LongArrayList boundaries = new LongArrayList();
+        
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            codePoints.add(codePoint);
+            spellingOffsets.add(spellingStarts.size());
+            
+            for (ExpendedChar expended : inputMethod.expendSourceChar(codePoint)) {
+                int start = data.size();
+                long mask = 0;
+                for (IntList phoneme : expended.phonemes()) {
+                    data.addAll(phoneme);
+                    int length = data.size() - start;
+                    // Empty phonemes do not move the match, so they do not end one either
+                    if (!phoneme.isEmpty() && length < Long.SIZE) {
+                        mask |= 1L << length;
+                    }
+                }
+                if (mask == 0) {
+                    data.size(start);
+                    continue;
+                }
+                spellingStarts.add(start);
+                boundaries.add(mask);
+            }
+        }
+        
+        spellingOffsets.add(spellingStarts.size());
+        spellingStarts.add(data.size());
+        return new PhoneticText(inputMethod, codePoints.toIntArray(), spellingOffsets.toIntArray(), spellingStarts.toIntArray(),
+                data.toIntArray(), boundaries.toLongArray());
+    }
+    
+    /**
+     * Returns whether the query can be typed starting from any character of this text, every character is either typed as itself
+     * or as a prefix of one of its spellings that ends a phoneme. The query may end in the middle of a phoneme.
+     */
+    public boolean contains(IntList query) {
+        int length = query.size();
+        if (length == 0) return codePoints.length > 0;
+        if (length >= Long.SIZE - 1) {
+            return InputMethodMatcher.contains(inputMethod, IntList.of(codePoints), query);
+        }
+        long accept = 1L << length;
+        long states = 0;
+        
+        for (int i = 0; i < codePoints.length; i++) {
+            // Every character may start a new match
+            states |= 1L;
+            long next = 0;
+            for (long remaining = states; remaining != 0; remaining &= remaining - 1) {
+                int position = Long.numberOfTrailingZeros(remaining);
+                if (query.getInt(position) == codePoints[i]) {
+                    next |= 1L << (position + 1);
+                }
+                for (int spelling = spellingOffsets[i]; spelling < spellingOffsets[i + 1]; spelling++) {
+                    next |= advance(query, length, position, spelling);
+                }
+            }
+            if ((next & accept) != 0) return true;
+            states = next;
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Returns the query positions reachable by typing a prefix of the spelling from the position.
+     */
+    private long advance(IntList query, int length, int position, int spelling) {
+        int start = spellingStarts[spelling];
+        int spellingLength = spellingStarts[spelling + 1] - start;
+        long mask = boundaries[spelling];
+        long reached = 0;
+        for (int k = 0; ; ) {
+            if (position + k == length) return reached | (1L << length);
+            if (k == spellingLength || query.getInt(position + k) != data[start + k]) return reached;
+            k++;
+            if ((mask & (1L << k)) != 0) {
+                reached |= 1L << (position + k);
+            }
+        }
+    }
+}
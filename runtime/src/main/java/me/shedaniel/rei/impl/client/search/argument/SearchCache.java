@@ -0,0 +1,209 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.shedaniel.rei.impl.client.search.argument;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import me.shedaniel.rei.impl.client.search.argument.type.ArgumentType;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, columnar snapshot of the search cache.
+ * <p>
+ * Every cached stack is assigned a dense slot, and every {@link ArgumentType} owns a column indexed by these slots.
+ * Snapshots are never mutated once published, so they can be read from any thread without locking.
+ */
+@ApiStatus.Internal
+@Environment(EnvType.CLIENT)
+public final class SearchCache {
+    public static final SearchCache EMPTY = new SearchCache(new Long2IntOpenHashMap(), new Object[0][], 0);
+    /**
+     * Marker for stacks whose cached data is {@code null}.
+     */
+    static final Object NO_CACHE = new Object();
+    private final Long2IntMap slots;
+    private final Object[][] columns;
+    private final int size;
+    
+    private SearchCache(Long2IntMap slots, Object[][] columns, int size) {
+        this.slots = slots;
+        this.slots.defaultReturnValue(-1);
+        this.columns = columns;
+        this.size = size;
+    }
+    
+    @Nullable
+    public Object get(ArgumentType<?, ?> argumentType, long hashExact) {
+        int index = argumentType.getIndex();
+        if (index >= columns.length) return null;
+        Object[] column = columns[index];
+        if (column == null) return null;
+        int slot = slots.get(hashExact);
+        return slot < 0 ? null : column[slot];
+    }
+    
+    /**
+     * Returns the slot of the stack, or {@code -1} if it is not cached in this snapshot.
+     */
+    public int slot(long hashExact) {
+        return slots.get(hashExact);
+    }
+    
+    /**
+     * Returns the cached data of the stack at the given slot, this is the same as {@link #get(ArgumentType, long)}
+     * without looking up the slot again for every argument type.
+     */
+    @Nullable
+    public Object get(ArgumentType<?, ?> argumentType, int slot) {
+        if (slot < 0) return null;
+        int index = argumentType.getIndex();
+        if (index >= columns.length) return null;
+        Object[] column = columns[index];
+        return column == null ? null : column[slot];
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the hashes of the cached stacks, indexed by their slots.
+     */
+    long[] getHashes() {
+        long[] hashes = new long[size];
+        for (Long2IntMap.Entry entry : slots.long2IntEntrySet()) {
+            hashes[entry.getIntValue()] = entry.getLongKey();
+        }
+        return hashes;
+    }
+    
+    /**
+     * Returns the column of the argument type indexed by slots, this must not be mutated.
+     */
+    @Nullable
+    Object[] getColumn(ArgumentType<?, ?> argumentType) {
+        int index = argumentType.getIndex();
+        return index >= columns.length ? null : columns[index];
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Returns a rough estimate of the retained size of this snapshot in bytes,
+     * assuming compressed object pointers and compact strings.
+     */
+    public long estimateMemoryUsage() {
+        // keys and values of the open hash map, at the default load factor
+        long bytes = (long) (slots.size() / 0.75f) * (Long.BYTES + Integer.BYTES);
+        for (Object[] column : columns) {
+            if (column == null) continue;
+            bytes += 16 + 4L * column.length;
+            for (Object value : column) {
+                bytes += estimateMemoryUsage(value);
+            }
+        }
+        return bytes;
+    }
+    
+    private static long estimateMemoryUsage(@Nullable Object value) {
+        if (value == null || value == NO_CACHE) return 0;
+        if (value instanceof String string) return 40 + string.length();
+        if (value instanceof Object[] array) {
+            long bytes = 16 + 4L * array.length;
+            for (Object o : array) {
+                bytes += estimateMemoryUsage(o);
+            }
+            return bytes;
+        }
+        return 16;
+    }
+    
+    public static Builder builder(SearchCache base) {
+        return new Builder(base);
+    }
+    
+    /**
+     * A builder extending a snapshot, slots are allocated on the building thread,
+     * while columns may be filled concurrently as long as each slot is only written by one thread.
+     */
+    public static class Builder {
+        private final Long2IntOpenHashMap slots;
+        private Object[][] columns;
+        private boolean[] owned;
+        private int size;
+        private boolean sealed;
+        
+        private Builder(SearchCache base) {
+            this.slots = new Long2IntOpenHashMap(base.slots);
+            this.slots.defaultReturnValue(-1);
+            this.columns = base.columns.clone();
+            this.owned = new boolean[columns.length];
+            this.size = base.size;
+        }
+        
+        public int slot(long hashExact) {
+            int slot = slots.get(hashExact);
+            if (slot < 0) {
+                if (sealed) throw new IllegalStateException("Cannot allocate slots after columns are requested!");
+                slots.put(hashExact, slot = size++);
+            }
+            return slot;
+        }
+        
+        /**
+         * Returns a private copy of the column of the argument type, sized to the current slots.
+         * No more slots can be allocated after this.
+         */
+        public Object[] column(ArgumentType<?, ?> argumentType) {
+            sealed = true;
+            int index = argumentType.getIndex();
+            if (index >= columns.length) {
+                columns = Arrays.copyOf(columns, index + 1);
+                owned = Arrays.copyOf(owned, index + 1);
+            }
+            if (!owned[index]) {
+                Object[] column = columns[index];
+                columns[index] = column == null ? new Object[size] : Arrays.copyOf(column, size);
+                owned[index] = true;
+            }
+            return columns[index];
+        }
+        
+        public SearchCache build() {
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] != null && columns[i].length != size) {
+                    columns[i] = Arrays.copyOf(columns[i], size);
+                }
+            }
+            return new SearchCache(slots, columns, size);
+        }
+    }
+}
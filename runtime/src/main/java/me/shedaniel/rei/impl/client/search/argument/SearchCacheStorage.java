@@ -0,0 +1,298 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.shedaniel.rei.impl.client.search.argument;
+
+import dev.architectury.fluid.FluidStack;
+import dev.architectury.platform.Mod;
+import dev.architectury.platform.Platform;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import me.shedaniel.rei.api.common.entry.EntryStack;
+import me.shedaniel.rei.api.common.entry.comparison.ComparisonContext;
+import me.shedaniel.rei.api.common.entry.comparison.EntryComparator;
+import me.shedaniel.rei.impl.client.search.argument.type.ArgumentType;
+import me.shedaniel.rei.impl.client.search.argument.type.ArgumentTypesRegistry;
+import me.shedaniel.rei.impl.client.search.argument.type.TooltipArgumentType;
+import me.shedaniel.rei.impl.common.InternalLogger;
+import me.shedaniel.rei.impl.common.util.HashedEntryStackWrapper;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.Minecraft;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.ItemStack;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Persists the cached data of {@link ArgumentType#isPersistable() persistable} argument types across sessions.
+ * <p>
+ * The snapshot is stored column by column, mirroring {@link SearchCache}, and is only loaded if the format version,
+ * the language, the installed mods and the enabled resource packs all match the ones it was written with.
+ * <p>
+ * Stacks are stored by a {@link #persistentKey(EntryStack) key} derived from their entry type, registry id and NBT,
+ * as their exact hashes start from identity hashes that change every session.
+ */
+@ApiStatus.Internal
+@Environment(EnvType.CLIENT)
+public final class SearchCacheStorage {
+    private static final int MAGIC = 0x52454953;
+    private static final int VERSION = 2;
+    private static final long NO_KEY = 0;
+    private static final EntryComparator<Tag> KEY_HASHER = EntryComparator.nbt();
+    private static final byte ABSENT = 0;
+    private static final byte STRING = 1;
+    private static final byte STRING_ARRAY = 2;
+    private final Path path;
+    
+    public SearchCacheStorage(Path path) {
+        this.path = path;
+    }
+    
+    /**
+     * Fingerprints the installed mods and the enabled resource packs, as resource packs may override the language.
+     */
+    public static long fingerprint() {
+        List<Mod> mods = new ArrayList<>(Platform.getMods());
+        mods.sort(Comparator.comparing(Mod::getModId));
+        long fingerprint = 1125899906842597L;
+        for (Mod mod : mods) {
+            fingerprint = 31 * fingerprint + mod.getModId().hashCode();
+            fingerprint = 31 * fingerprint + mod.getVersion().hashCode();
+        }
+        File packDirectory = Minecraft.getInstance().getResourcePackDirectory();
+        for (String pack : Minecraft.getInstance().options.resourcePacks) {
+            fingerprint = 31 * fingerprint + pack.hashCode();
+            if (pack.startsWith("file/")) {
+                // The contents of a pack may change without its name changing
+                fingerprint = 31 * fingerprint + new File(packDirectory, pack.substring("file/".length())).lastModified();
+            }
+        }
+        return fingerprint;
+    }
+    
+    /**
+     * Returns a key identifying the stack across sessions, or {@link #NO_KEY} if the stack cannot be identified across sessions.
+     */
+    public static long persistentKey(EntryStack<?> stack) {
+        ResourceLocation id = stack.getIdentifier();
+        if (id == null) return NO_KEY;
+        Tag nbt;
+        if (stack.getValue() instanceof ItemStack itemStack) {
+            nbt = itemStack.getTag();
+        } else if (stack.getValue() instanceof FluidStack fluidStack) {
+            nbt = fluidStack.getTag();
+        } else {
+            return NO_KEY;
+        }
+        CompoundTag key = new CompoundTag();
+        key.putString("type", stack.getType().getId().toString());
+        key.putString("id", id.toString());
+        if (nbt != null) key.put("tag", nbt);
+        long hash = KEY_HASHER.hash(ComparisonContext.EXACT, key);
+        return hash == NO_KEY ? 1 : hash;
+    }
+    
+    /**
+     * Maps the exact hashes of the stacks to their {@link #persistentKey(EntryStack) persistent keys},
+     * stacks without a key, or sharing their key with another stack, are left out and never persisted.
+     */
+    public static Long2LongMap persistentKeys(List<HashedEntryStackWrapper> stacks) {
+        Long2LongMap keys = new Long2LongOpenHashMap(stacks.size());
+        LongSet seen = new LongOpenHashSet(stacks.size());
+        LongSet shared = new LongOpenHashSet();
+        for (HashedEntryStackWrapper stack : stacks) {
+            long key = persistentKey(stack.unwrap());
+            if (key == NO_KEY) continue;
+            if (!seen.add(key)) shared.add(key);
+            keys.put(stack.hashExact(), key);
+        }
+        if (!shared.isEmpty()) {
+            keys.values().removeIf(shared::contains);
+        }
+        return keys;
+    }
+    
+    /**
+     * Loads the snapshot, only keeping the stacks with the given keys.
+     *
+     * @param keys the {@link #persistentKeys(List) persistent keys} of the current stacks by their exact hashes
+     * @return the loaded snapshot, or {@code null} if there is no valid snapshot for the language, mods and resource packs
+     */
+    @Nullable
+    public SearchCache load(String language, long fingerprint, Long2LongMap keys) {
+        if (!Files.isRegularFile(path)) return null;
+        try {
+            // Read to the heap instead of mapping, a mapped file cannot be replaced on some platforms until it is unmapped
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return null;
+            if (!language.equals(readString(buffer)) || buffer.getLong() != fingerprint) return null;
+            
+            Long2LongMap hashes = new Long2LongOpenHashMap(keys.size());
+            hashes.defaultReturnValue(NO_KEY);
+            for (Long2LongMap.Entry entry : keys.long2LongEntrySet()) {
+                hashes.put(entry.getLongValue(), entry.getLongKey());
+            }
+            SearchCache.Builder builder = SearchCache.builder(SearchCache.EMPTY);
+            int size = buffer.getInt();
+            int[] slots = new int[size];
+            for (int i = 0; i < size; i++) {
+                long key = buffer.getLong();
+                slots[i] = hashes.containsKey(key) ? builder.slot(hashes.get(key)) : -1;
+            }
+            
+            int columnCount = buffer.getInt();
+            for (int i = 0; i < columnCount; i++) {
+                ArgumentType<?, ?> argumentType = ArgumentTypesRegistry.ARGUMENT_TYPES.get(readString(buffer));
+                if (argumentType == null || !argumentType.isPersistable()) return null;
+                Object[] column = builder.column(argumentType);
+                for (int j = 0; j < size; j++) {
+                    Object value = readValue(buffer);
+                    if (slots[j] >= 0) {
+                        column[slots[j]] = value;
+                    }
+                }
+            }
+            
+            return builder.build();
+        } catch (IOException | BufferUnderflowException e) {
+            InternalLogger.getInstance().warn("Failed to load search cache from " + path, e);
+            return null;
+        }
+    }
+    
+    /**
+     * Saves the snapshot, stacks without a persistent key in {@code keys} are left out.
+     *
+     * @param keys the {@link #persistentKeys(List) persistent keys} of the stacks by their exact hashes
+     */
+    public synchronized void save(SearchCache cache, String language, long fingerprint, Long2LongMap keys) {
+        long[] hashes = cache.getHashes();
+        List<ArgumentType<?, ?>> argumentTypes = new ArrayList<>();
+        for (ArgumentType<?, ?> argumentType : ArgumentTypesRegistry.ARGUMENT_TYPE_LIST) {
+            if (argumentType.isPersistable() && cache.getColumn(argumentType) != null) {
+                argumentTypes.add(argumentType);
+            }
+        }
+        
+        try {
+            Path parent = path.getParent();
+            if (parent != null) Files.createDirectories(parent);
+            Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+            try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath), 65536))) {
+                stream.writeInt(MAGIC);
+                stream.writeInt(VERSION);
+                writeString(stream, language);
+                stream.writeLong(fingerprint);
+                int size = 0;
+                for (long hash : hashes) {
+                    if (keys.containsKey(hash)) size++;
+                }
+                stream.writeInt(size);
+                for (long hash : hashes) {
+                    if (keys.containsKey(hash)) {
+                        stream.writeLong(keys.get(hash));
+                    }
+                }
+                stream.writeInt(argumentTypes.size());
+                for (ArgumentType<?, ?> argumentType : argumentTypes) {
+                    writeString(stream, argumentType.getName());
+                    Object[] column = cache.getColumn(argumentType);
+                    for (int slot = 0; slot < hashes.length; slot++) {
+                        if (keys.containsKey(hashes[slot])) {
+                            writeValue(stream, slot < column.length ? column[slot] : null);
+                        }
+                    }
+                }
+            }
+            try {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            InternalLogger.getInstance().warn("Failed to save search cache to " + path, e);
+        }
+    }
+    
+    @Nullable
+    private static Object readValue(ByteBuffer buffer) {
+        byte type = buffer.get();
+        if (type == STRING) return readString(buffer);
+        if (type == STRING_ARRAY) {
+            String[] array = new String[buffer.getInt()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = readString(buffer);
+            }
+            return array;
+        }
+        return null;
+    }
+    
+    private static void writeValue(DataOutputStream stream, @Nullable Object value) throws IOException {
+        //noinspection StringEquality
+        if (value instanceof String string && string != TooltipArgumentType.INVALID) {
+            stream.writeByte(STRING);
+            writeString(stream, string);
+        } else if (value instanceof String[] array) {
+            stream.writeByte(STRING_ARRAY);
+            stream.writeInt(array.length);
+            for (String string : array) {
+                writeString(stream, string);
+            }
+        } else {
+            stream.writeByte(ABSENT);
+        }
+    }
+    
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static void writeString(DataOutputStream stream, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.shedaniel.rei.impl.client.search.argument;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.*;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import me.shedaniel.rei.impl.client.search.argument.type.ArgumentType;
+import me.shedaniel.rei.impl.client.search.argument.type.ModArgumentType;
+import me.shedaniel.rei.impl.client.search.argument.type.NamespaceDictionary;
+import me.shedaniel.rei.impl.common.util.HashedEntryStackWrapper;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * An immutable trigram index over the cached search data of the indexable {@link ArgumentType}s.
+ * <p>
+ * Queries are answered as posting-list intersections and only produce candidates, every candidate
+ * still has to be verified by the actual search filter.
+ * <p>
+ * The stacks of every namespace are also kept as a bitset, so that a mod search selects the stacks of the matching namespaces directly.
+ */
+@ApiStatus.Internal
+@Environment(EnvType.CLIENT)
+public final class SearchIndex {
+    public static final int GRAM_LENGTH = 3;
+    private static final int[] EMPTY_POSTINGS = new int[0];
+    private final Long2IntMap documents;
+    private final int size;
+    private final Reference2ObjectMap<ArgumentType<?, ?>, Postings> postings;
+    @Nullable
+    private final NamespacePostings namespaces;
+    
+    private SearchIndex(Long2IntMap documents, int size, Reference2ObjectMap<ArgumentType<?, ?>, Postings> postings, @Nullable NamespacePostings namespaces) {
+        this.documents = documents;
+        this.size = size;
+        this.postings = postings;
+        this.namespaces = namespaces;
+    }
+    
+    public static SearchIndex build(List<HashedEntryStackWrapper> stacks, Collection<ArgumentType<?, ?>> argumentTypes, SearchCache cache) {
+        Long2IntMap documents = new Long2IntOpenHashMap(stacks.size());
+        documents.defaultReturnValue(-1);
+        LongList hashes = new LongArrayList(stacks.size());
+        for (HashedEntryStackWrapper stack : stacks) {
+            if (!documents.containsKey(stack.hashExact())) {
+                documents.put(stack.hashExact(), hashes.size());
+                hashes.add(stack.hashExact());
+            }
+        }
+        
+        Reference2ObjectMap<ArgumentType<?, ?>, Postings> postings = new Reference2ObjectOpenHashMap<>();
+        LongSet grams = new LongOpenHashSet();
+        for (ArgumentType<?, ?> argumentType : argumentTypes) {
+            if (!argumentType.isIndexable()) continue;
+            Long2ObjectMap<IntArrayList> building = new Long2ObjectOpenHashMap<>();
+            BitSet uncovered = new BitSet();
+            
+            for (int document = 0; document < hashes.size(); document++) {
+                Object data = cache.get(argumentType, hashes.getLong(document));
+                if (data == null || data == SearchCache.NO_CACHE) {
+                    uncovered.set(document);
+                    continue;
+                }
+                //noinspection unchecked
+                String text = ((ArgumentType<?, Object>) argumentType).getIndexedText(data);
+                if (text == null || text.length() < GRAM_LENGTH) continue;
+                grams.clear();
+                for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+                    grams.add(gram(text, i));
+                }
+                LongIterator iterator = grams.iterator();
+                while (iterator.hasNext()) {
+                    building.computeIfAbsent(iterator.nextLong(), $ -> new IntArrayList()).add(document);
+                }
+            }
+            
+            Long2ObjectMap<int[]> finished = new Long2ObjectOpenHashMap<>(building.size());
+            for (Long2ObjectMap.Entry<IntArrayList> entry : building.long2ObjectEntrySet()) {
+                finished.put(entry.getLongKey(), entry.getValue().toIntArray());
+            }
+            postings.put(argumentType, new Postings(finished, uncovered));
+        }
+        
+        NamespacePostings namespaces = null;
+        if (argumentTypes.contains(ModArgumentType.INSTANCE)) {
+            List<BitSet> building = new ArrayList<>();
+            BitSet uncovered = new BitSet();
+            for (int document = 0; document < hashes.size(); document++) {
+                Object data = cache.get(ModArgumentType.INSTANCE, hashes.getLong(document));
+                if (data == null) {
+                    uncovered.set(document);
+                } else if (data instanceof NamespaceDictionary.Namespace namespace) {
+                    while (building.size() <= namespace.id()) {
+                        building.add(new BitSet());
+                    }
+                    building.get(namespace.id()).set(document);
+                }
+            }
+            namespaces = new NamespacePostings(building.toArray(new BitSet[0]), uncovered);
+        }
+        
+        return new SearchIndex(documents, hashes.size(), postings, namespaces);
+    }
+    
+    private static long gram(CharSequence text, int index) {
+        return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isIndexed(ArgumentType<?, ?> argumentType) {
+        return postings.containsKey(argumentType);
+    }
+    
+    public int getGramCount() {
+        int count = 0;
+        for (Postings value : postings.values()) {
+            count += value.grams().size();
+        }
+        return count;
+    }
+    
+    /**
+     * Returns the documents that may contain the given text for the given argument type,
+     * or {@code null} if the text is too short to be answered by the index.
+     */
+    @Nullable
+    public BitSet query(ArgumentType<?, ?> argumentType, String text) {
+        Postings value = postings.get(argumentType);
+        if (value == null || text.length() < GRAM_LENGTH) return null;
+        BitSet bitSet = new BitSet(size);
+        bitSet.or(value.uncovered());
+        int gramCount = text.length() - GRAM_LENGTH + 1;
+        int[][] lists = new int[gramCount][];
+        for (int i = 0; i < gramCount; i++) {
+            int[] list = value.grams().getOrDefault(gram(text, i), EMPTY_POSTINGS);
+            if (list.length == 0) return bitSet;
+            lists[i] = list;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+        int[] result = lists[0];
+        int resultSize = result.length;
+        for (int i = 1; i < lists.length && resultSize > 0; i++) {
+            int[] out = result == lists[0] ? new int[resultSize] : result;
+            resultSize = intersect(result, resultSize, lists[i], out);
+            result = out;
+        }
+        for (int i = 0; i < resultSize; i++) {
+            bitSet.set(result[i]);
+        }
+        return bitSet;
+    }
+    
+    /**
+     * Returns the documents of the given namespaces, or {@code null} if the namespaces are not indexed.
+     *
+     * @param namespaceIds the ids of the namespaces, from {@link ModArgumentType#matchNamespaces}
+     */
+    @Nullable
+    public BitSet queryNamespaces(BitSet namespaceIds) {
+        if (namespaces == null) return null;
+        BitSet bitSet = (BitSet) namespaces.uncovered().clone();
+        for (int id = namespaceIds.nextSetBit(0); id >= 0 && id < namespaces.documents().length; id = namespaceIds.nextSetBit(id + 1)) {
+            bitSet.or(namespaces.documents()[id]);
+        }
+        return bitSet;
+    }
+    
+    private static int intersect(int[] a, int aSize, int[] b, int[] out) {
+        int i = 0, j = 0, k = 0;
+        while (i < aSize && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                out[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return k;
+    }
+    
+    /**
+     * Returns a predicate on {@link me.shedaniel.rei.api.common.util.EntryStacks#hashExact} that rejects entries that cannot
+     * match the candidates, entries unknown to this index are always accepted.
+     */
+    public LongPredicate toPredicate(BitSet candidates) {
+        return hash -> {
+            int document = documents.get(hash);
+            return document < 0 || candidates.get(document);
+        };
+    }
+    
+    /**
+     * The posting lists of an argument type, documents without cached data are uncovered and are always candidates.
+     */
+    private record Postings(Long2ObjectMap<int[]> grams, BitSet uncovered) {
+    }
+    
+    /**
+     * The documents of every namespace id, documents without cached data are uncovered and are always candidates.
+     */
+    private record NamespacePostings(BitSet[] documents, BitSet uncovered) {
+    }
+}
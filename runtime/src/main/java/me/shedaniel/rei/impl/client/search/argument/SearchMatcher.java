@@ -0,0 +1,248 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.shedaniel.rei.impl.client.search.argument;
+
+import it.unimi.dsi.fastutil.ints.IntList;
+import me.shedaniel.rei.api.client.search.method.CharacterUnpackingInputMethod;
+import me.shedaniel.rei.api.client.search.method.InputMethod;
+import me.shedaniel.rei.api.common.entry.EntryStack;
+import me.shedaniel.rei.api.common.util.EntryStacks;
+import me.shedaniel.rei.impl.client.search.argument.type.ArgumentType;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.*;
+
+/**
+ * An immutable matcher compiled from the baked arguments of a search filter.
+ * <p>
+ * The filters of the input method are expanded once per argument, and empty alternatives are dropped at compile time,
+ * testing a stack then only looks up its cache slot once and walks flat arrays without allocating.
+ */
+@ApiStatus.Internal
+@Environment(EnvType.CLIENT)
+public final class SearchMatcher<T> {
+    private final Term[][][] compounds;
+    private final boolean matchesAll;
+    private final InputMethod<T> inputMethod;
+    private final boolean unpacking;
+    private final ThreadLocal<Sink<T>> sinks;
+    
+    private SearchMatcher(Term[][][] compounds, boolean matchesAll, InputMethod<T> inputMethod) {
+        this.compounds = compounds;
+        this.matchesAll = matchesAll;
+        this.inputMethod = inputMethod;
+        this.unpacking = inputMethod instanceof CharacterUnpackingInputMethod;
+        this.sinks = ThreadLocal.withInitial(() -> new Sink<>(this));
+    }
+    
+    /**
+     * Compiles the arguments, ordering the OR-ed and AND-ed terms by their estimated cost and selectivity
+     * so that evaluation short-circuits as early as possible. Compounds keep their order, as they are rarely more than a few.
+     */
+    public static <T> SearchMatcher<T> compile(List<CompoundArgument> compoundArguments, InputMethod<T> inputMethod) {
+        Argument.checkLanguage();
+        if (compoundArguments.isEmpty()) return new SearchMatcher<>(new Term[0][][], true, inputMethod);
+        List<Term[][]> compounds = new ArrayList<>(compoundArguments.size());
+        
+        for (CompoundArgument arguments : compoundArguments) {
+            List<Alternative> alternatives = new ArrayList<>(arguments.size());
+            for (AlternativeArgument alternativeArgument : arguments) {
+                if (alternativeArgument.isEmpty()) continue;
+                Term[] terms = new Term[alternativeArgument.size()];
+                for (int i = 0; i < terms.length; i++) {
+                    terms[i] = compile(alternativeArgument.get(i), inputMethod);
+                }
+                Arrays.sort(terms, Comparator.comparingDouble((Term term) -> SearchPlanner.rankDisjunct(term.cost(), term.selectivity())));
+                alternatives.add(new Alternative(terms));
+            }
+            // A compound without alternatives matches everything, so the whole filter does
+            if (alternatives.isEmpty()) return new SearchMatcher<>(new Term[0][][], true, inputMethod);
+            alternatives.sort(Comparator.comparingDouble((Alternative alternative) -> SearchPlanner.rankConjunct(alternative.cost(), alternative.selectivity())));
+            Term[][] planned = new Term[alternatives.size()][];
+            for (int i = 0; i < planned.length; i++) {
+                planned[i] = alternatives.get(i).terms();
+            }
+            compounds.add(planned);
+        }
+        
+        return new SearchMatcher<>(compounds.toArray(new Term[0][][]), false, inputMethod);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> Term compile(Argument<?, ?> argument, InputMethod<T> inputMethod) {
+        List<Object> filters = new ArrayList<>();
+        for (T filter : inputMethod.expendFilter(argument.getText())) {
+            filters.add(filter);
+        }
+        return new Term((ArgumentType<Object, Object>) argument.getArgument(), argument.getText(), argument.getFilterData(),
+                argument.isRegular(), filters.toArray(), SearchPlanner.estimateCost(argument.getArgument()),
+                SearchPlanner.estimateSelectivity(argument, inputMethod));
+    }
+    
+    public boolean matches(EntryStack<?> stack) {
+        if (matchesAll) return true;
+        long hashExact = EntryStacks.hashExact(stack);
+        SearchCache cache = Argument.getSearchCache();
+        int slot = cache.slot(hashExact);
+        Sink<T> sink = sinks.get();
+        
+        a:
+        for (Term[][] alternatives : compounds) {
+            for (Term[] terms : alternatives) {
+                if (!matches(stack, terms, hashExact, cache, slot, sink)) {
+                    continue a;
+                }
+            }
+            
+            return true;
+        }
+        
+        return false;
+    }
+    
+    private static boolean matches(EntryStack<?> stack, Term[] terms, long hashExact, SearchCache cache, int slot, Sink<?> sink) {
+        for (Term term : terms) {
+            boolean sampled = (++sink.evaluations & SearchPlanner.SAMPLE_MASK) == 0;
+            long start = sampled ? System.nanoTime() : 0;
+            Object value = Argument.getCachedData(term.argumentType(), stack, hashExact, cache, slot);
+            sink.matches = false;
+            sink.filters = term.filters();
+            term.argumentType().matches(value == SearchCache.NO_CACHE ? null : value, stack, term.filterData(), sink);
+            if (sampled) {
+                SearchPlanner.record(term.argumentType(), System.nanoTime() - start, sink.matches);
+            }
+            if (sink.matches == term.regular()) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Returns the planned evaluation order, with the estimated cost in nanoseconds and selectivity of every term.
+     */
+    @Override
+    public String toString() {
+        if (matchesAll) return "*";
+        StringJoiner compoundJoiner = new StringJoiner(" | ");
+        for (Term[][] alternatives : compounds) {
+            StringJoiner alternativeJoiner = new StringJoiner(" AND ");
+            for (Term[] terms : alternatives) {
+                StringJoiner termJoiner = new StringJoiner(" OR ", terms.length > 1 ? "(" : "", terms.length > 1 ? ")" : "");
+                for (Term term : terms) {
+                    termJoiner.add(String.format(Locale.ROOT, "%s%s:\"%s\" [%.0fns, %.3f]", term.regular() ? "" : "-",
+                            term.argumentType().getName(), term.text(), term.cost(), term.selectivity()));
+                }
+                alternativeJoiner.add(termJoiner.toString());
+            }
+            compoundJoiner.add(alternativeJoiner.toString());
+        }
+        return compoundJoiner.toString();
+    }
+    
+    private record Term(ArgumentType<Object, Object> argumentType, String text, Object filterData, boolean regular, Object[] filters,
+                        double cost, double selectivity) {
+    }
+    
+    /**
+     * OR-ed terms, their cost is the expected cost of evaluating them in order until one passes.
+     */
+    private record Alternative(Term[] terms, double cost, double selectivity) {
+        private Alternative(Term[] terms) {
+            this(terms, computeCost(terms), computeSelectivity(terms));
+        }
+        
+        private static double computeCost(Term[] terms) {
+            double cost = 0, reached = 1;
+            for (Term term : terms) {
+                cost += reached * term.cost();
+                reached *= 1 - term.selectivity();
+            }
+            return cost;
+        }
+        
+        private static double computeSelectivity(Term[] terms) {
+            double failing = 1;
+            for (Term term : terms) {
+                failing *= 1 - term.selectivity();
+            }
+            return 1 - failing;
+        }
+    }
+    
+    /**
+     * A reusable result sink, every searching thread owns one.
+     */
+    private static class Sink<T> implements ArgumentType.ResultSink {
+        private final SearchMatcher<T> matcher;
+        private boolean matches;
+        private Object[] filters;
+        private int evaluations;
+        
+        private Sink(SearchMatcher<T> matcher) {
+            this.matcher = matcher;
+        }
+        
+        @Override
+        public boolean testTrue() {
+            return matches = true;
+        }
+        
+        @Override
+        public boolean testString(String text) {
+            if (matches) return true;
+            return matches = test(text);
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean test(String text) {
+            if (matcher.unpacking) {
+                PhoneticText phoneticText = PhoneticText.of((CharacterUnpackingInputMethod) matcher.inputMethod, text);
+                for (Object filter : filters) {
+                    if (phoneticText.contains((IntList) filter)) {
+                        return true;
+                    }
+                }
+            } else {
+                for (Object filter : filters) {
+                    if (matcher.inputMethod.contains(text, (T) filter)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        
+        @Override
+        public Object getTestKey() {
+            // Every compiled term owns its expanded filters
+            return filters;
+        }
+    }
+}
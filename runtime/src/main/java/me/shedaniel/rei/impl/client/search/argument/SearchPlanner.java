@@ -0,0 +1,138 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.shedaniel.rei.impl.client.search.argument;
+
+import me.shedaniel.rei.api.client.search.method.InputMethod;
+import me.shedaniel.rei.impl.client.search.argument.type.ArgumentType;
+import me.shedaniel.rei.impl.client.search.argument.type.ArgumentTypesRegistry;
+import me.shedaniel.rei.impl.client.search.method.DefaultInputMethod;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Estimates the cost and the selectivity of search arguments, so that {@link SearchMatcher} evaluates
+ * the cheapest and most selective arguments first.
+ * <p>
+ * Costs start from {@link ArgumentType#getEstimatedCost()} and are replaced by the matching time sampled while searching.
+ * Selectivities are answered by the search index where possible, and otherwise by the sampled match rate.
+ */
+@ApiStatus.Internal
+@Environment(EnvType.CLIENT)
+public final class SearchPlanner {
+    /**
+     * Every {@code SAMPLE_MASK + 1}th evaluation on a thread is timed.
+     */
+    static final int SAMPLE_MASK = 63;
+    private static final int MIN_SAMPLES = 32;
+    private static final double DEFAULT_NANOS = 100;
+    private static final double DEFAULT_SELECTIVITY = 0.5;
+    private static final int FIELDS = 3;
+    /**
+     * The sampled nanoseconds, samples and matches of every argument type, indexed by {@link ArgumentType#getIndex()}.
+     */
+    private static final AtomicLongArray STATISTICS = new AtomicLongArray(ArgumentTypesRegistry.ARGUMENT_TYPE_LIST.size() * FIELDS);
+    
+    private SearchPlanner() {
+    }
+    
+    static void record(ArgumentType<?, ?> argumentType, long nanos, boolean matched) {
+        int offset = argumentType.getIndex() * FIELDS;
+        if (offset < 0 || offset + FIELDS > STATISTICS.length()) return;
+        STATISTICS.addAndGet(offset, nanos);
+        STATISTICS.incrementAndGet(offset + 1);
+        if (matched) STATISTICS.incrementAndGet(offset + 2);
+    }
+    
+    /**
+     * Returns the estimated nanoseconds to match a single stack with the argument type.
+     */
+    public static double estimateCost(ArgumentType<?, ?> argumentType) {
+        int offset = argumentType.getIndex() * FIELDS;
+        if (offset >= 0 && offset + FIELDS <= STATISTICS.length()) {
+            long samples = STATISTICS.get(offset + 1);
+            if (samples >= MIN_SAMPLES) return (double) STATISTICS.get(offset) / samples;
+        }
+        return argumentType.getEstimatedCost() * getNanosPerCost();
+    }
+    
+    /**
+     * Returns the nanoseconds of a unit of {@link ArgumentType#getEstimatedCost()}, averaged over the sampled argument types.
+     */
+    private static double getNanosPerCost() {
+        double sum = 0;
+        int count = 0;
+        for (ArgumentType<?, ?> argumentType : ArgumentTypesRegistry.ARGUMENT_TYPE_LIST) {
+            int offset = argumentType.getIndex() * FIELDS;
+            if (offset + FIELDS > STATISTICS.length()) continue;
+            long samples = STATISTICS.get(offset + 1);
+            if (samples >= MIN_SAMPLES && argumentType.getEstimatedCost() > 0) {
+                sum += STATISTICS.get(offset) / (samples * argumentType.getEstimatedCost());
+                count++;
+            }
+        }
+        return count == 0 ? DEFAULT_NANOS : sum / count;
+    }
+    
+    /**
+     * Returns the estimated fraction of stacks that pass the argument, taking inversion into account.
+     */
+    public static double estimateSelectivity(Argument<?, ?> argument, InputMethod<?> inputMethod) {
+        double selectivity = estimateMatchRate(argument, inputMethod);
+        return argument.isRegular() ? selectivity : 1 - selectivity;
+    }
+    
+    private static double estimateMatchRate(Argument<?, ?> argument, InputMethod<?> inputMethod) {
+        ArgumentType<?, ?> argumentType = argument.getArgument();
+        SearchIndex index = Argument.getSearchIndex();
+        if (index != null && index.size() > 0 && inputMethod == DefaultInputMethod.INSTANCE && index.isIndexed(argumentType)) {
+            BitSet candidates = index.query(argumentType, argument.getText());
+            if (candidates != null) return (double) candidates.cardinality() / index.size();
+        }
+        int offset = argumentType.getIndex() * FIELDS;
+        if (offset >= 0 && offset + FIELDS <= STATISTICS.length()) {
+            long samples = STATISTICS.get(offset + 1);
+            if (samples >= MIN_SAMPLES) return (double) STATISTICS.get(offset + 2) / samples;
+        }
+        return DEFAULT_SELECTIVITY;
+    }
+    
+    /**
+     * Returns the rank of a conjunct, evaluating conjuncts by ascending rank minimizes the expected cost.
+     */
+    static double rankConjunct(double cost, double selectivity) {
+        return selectivity >= 1 ? Double.POSITIVE_INFINITY : cost / (1 - selectivity);
+    }
+    
+    /**
+     * Returns the rank of a disjunct, evaluating disjuncts by ascending rank minimizes the expected cost.
+     */
+    static double rankDisjunct(double cost, double selectivity) {
+        return selectivity <= 0 ? Double.POSITIVE_INFINITY : cost / selectivity;
+    }
+}
@@ -88,6 +88,46 @@ public abstract class ArgumentType<T, R> {
     
     public abstract void matches(R data, EntryStack<?> stack, T filterData, ResultSink sink);
     
+    /**
+     * Returns whether this argument type only ever matches with a plain {@link ResultSink#testString(String)}
+     * on the text returned by {@link #getIndexedText(Object)}, and can therefore be answered by the search index.
+     */
+    public boolean isIndexable() {
+        return false;
+    }
+    
+    /**
+     * Returns the text to index for the cached data, or {@code null} if the data never matches.
+     */
+    @Nullable
+    public String getIndexedText(R data) {
+        return null;
+    }
+    
+    /**
+     * Returns whether this argument type only matches by {@link ResultSink#testString(String)} against the cached data,
+     * so that extending the search text can only narrow the matched entries.
+     */
+    public boolean isTextMatching() {
+        return isIndexable();
+    }
+    
+    /**
+     * Returns whether the cached data of this argument type only depends on the language and the installed mods,
+     * and can be persisted across sessions. Persisted data must be a {@link String} or a {@code String[]}.
+     */
+    public boolean isPersistable() {
+        return false;
+    }
+    
+    /**
+     * Returns the estimated cost of matching a single stack relative to a plain text match,
+     * used to order search arguments before any matching time is recorded.
+     */
+    public double getEstimatedCost() {
+        return 1;
+    }
+    
     public int getIndex() {
         if (index >= 0) return index;
         return index = ArgumentTypesRegistry.ARGUMENT_TYPE_LIST.indexOf(this);
@@ -97,5 +137,17 @@ public abstract class ArgumentType<T, R> {
         boolean testTrue();
         
         boolean testString(String text);
+        
+        /**
+         * Tests the text against the search text without recording a match, used to resolve
+         * the search text against a dictionary of distinct texts instead of testing the texts of every stack.
+         */
+        boolean test(String text);
+        
+        /**
+         * Returns a key identifying the search text and the input method tested against,
+         * {@link #test(String)} gives the same results for the same key.
+         */
+        Object getTestKey();
     }
 }
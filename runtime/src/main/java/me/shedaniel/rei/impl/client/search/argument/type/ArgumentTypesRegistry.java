@@ -37,7 +37,7 @@ public final class ArgumentTypesRegistry {
     
     static {
         register(new AlwaysMatchingArgumentType());
-        register(new ModArgumentType());
+        register(ModArgumentType.INSTANCE);
         register(new TooltipArgumentType());
         register(new TagArgumentType());
         register(new IdentifierArgumentType());
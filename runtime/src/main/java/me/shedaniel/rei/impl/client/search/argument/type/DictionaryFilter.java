@@ -0,0 +1,74 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.shedaniel.rei.impl.client.search.argument.type;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+
+/**
+ * The ids of a dictionary matching the search text of a term, resolved on the first stack matched and
+ * extended whenever a stack refers to an id added to the dictionary after the resolution.
+ */
+@ApiStatus.Internal
+@Environment(EnvType.CLIENT)
+public abstract class DictionaryFilter {
+    @Nullable
+    private volatile Resolution resolution;
+    
+    /**
+     * Tests the ids of the dictionary from {@code from} against the sink, setting the matching ones in {@code matched}.
+     *
+     * @return the size of the dictionary tested
+     */
+    protected abstract int test(ArgumentType.ResultSink sink, BitSet matched, int from);
+    
+    /**
+     * Returns the matching ids, covering at least the ids below {@code requiredSize}.
+     */
+    public BitSet resolve(ArgumentType.ResultSink sink, int requiredSize) {
+        Resolution resolution = this.resolution;
+        if (resolution != null && resolution.key() == sink.getTestKey() && resolution.size() >= requiredSize) {
+            return resolution.matched();
+        }
+        synchronized (this) {
+            resolution = this.resolution;
+            if (resolution == null || resolution.key() != sink.getTestKey()) {
+                resolution = new Resolution(sink.getTestKey(), new BitSet(), 0);
+            }
+            if (resolution.size() < requiredSize) {
+                BitSet matched = (BitSet) resolution.matched().clone();
+                int size = test(sink, matched, resolution.size());
+                resolution = new Resolution(resolution.key(), matched, size);
+            }
+            this.resolution = resolution;
+            return resolution.matched();
+        }
+    }
+    
+    private record Resolution(Object key, BitSet matched, int size) {}
+}
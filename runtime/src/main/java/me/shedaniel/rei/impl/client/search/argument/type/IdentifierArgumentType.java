@@ -81,6 +81,22 @@ public final class IdentifierArgumentType extends ArgumentType<Unit, String> {
         }
     }
     
+    @Override
+    public boolean isPersistable() {
+        return true;
+    }
+    
+    @Override
+    public boolean isIndexable() {
+        return true;
+    }
+    
+    @Override
+    @Nullable
+    public String getIndexedText(String data) {
+        return data.isEmpty() ? null : data;
+    }
+    
     @Override
     public Unit prepareSearchFilter(String searchText) {
         return Unit.INSTANCE;
@@ -23,25 +23,30 @@
 
 package me.shedaniel.rei.impl.client.search.argument.type;
 
-import me.shedaniel.rei.api.client.ClientHelper;
 import me.shedaniel.rei.api.client.config.ConfigObject;
 import me.shedaniel.rei.api.client.gui.config.SearchMode;
+import me.shedaniel.rei.api.client.search.method.InputMethod;
 import me.shedaniel.rei.api.common.entry.EntryStack;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.network.chat.Style;
 import net.minecraft.network.chat.TextColor;
-import net.minecraft.util.Unit;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 @ApiStatus.Internal
 @Environment(EnvType.CLIENT)
-public final class ModArgumentType extends ArgumentType<Unit, ModArgumentType.@Nullable ModInfoPair> {
+public final class ModArgumentType extends ArgumentType<ModArgumentType.ModFilter, NamespaceDictionary.@Nullable Namespace> {
     public static final ModArgumentType INSTANCE = new ModArgumentType();
     private static final Style STYLE = Style.EMPTY.withColor(TextColor.fromRgb(0xffa8f3));
+    private static final NamespaceDictionary NAMESPACES = new NamespaceDictionary();
+    
+    private ModArgumentType() {
+    }
     
     @Override
     public String getName() {
@@ -60,27 +65,51 @@ public final class ModArgumentType extends ArgumentType<Unit, ModArgumentType.@N
     }
     
     @Override
-    @Nullable
-    public ModInfoPair cacheData(EntryStack<?> stack) {
+    public NamespaceDictionary.@Nullable Namespace cacheData(EntryStack<?> stack) {
         String containingNs = stack.getContainingNamespace();
-        return containingNs != null ? new ModInfoPair(
-                containingNs,
-                null
-        ) : ModInfoPair.EMPTY;
+        return containingNs != null ? NAMESPACES.intern(containingNs) : null;
     }
     
     @Override
-    public void matches(@Nullable ModInfoPair pair, EntryStack<?> stack, Unit filterData, ResultSink sink) {
-        if (pair.modId == null || sink.testString(pair.modId)) return;
-        if (pair.modName == null) {
-            pair.modName = ClientHelper.getInstance().getModFromModId(pair.modId).toLowerCase(Locale.ROOT);
+    public void matches(NamespaceDictionary.@Nullable Namespace namespace, EntryStack<?> stack, ModFilter filterData, ResultSink sink) {
+        if (namespace != null && filterData.resolve(sink, namespace.id() + 1).get(namespace.id())) {
+            sink.testTrue();
+        }
+    }
+    
+    /**
+     * Returns the ids of the namespaces matching the text, used to select the stacks through the search index.
+     */
+    public <T> BitSet matchNamespaces(String text, InputMethod<T> inputMethod) {
+        List<T> filters = new ArrayList<>();
+        for (T filter : inputMethod.expendFilter(text)) {
+            filters.add(filter);
+        }
+        BitSet matched = new BitSet();
+        for (NamespaceDictionary.Namespace namespace : NAMESPACES.getNamespaces()) {
+            for (T filter : filters) {
+                if (inputMethod.contains(namespace.modId(), filter) || inputMethod.contains(namespace.modName(), filter)) {
+                    matched.set(namespace.id());
+                    break;
+                }
+            }
         }
-        sink.testString(pair.modName);
+        return matched;
+    }
+    
+    @Override
+    public boolean isTextMatching() {
+        return true;
+    }
+    
+    @Override
+    public double getEstimatedCost() {
+        return 0.5;
     }
     
     @Override
-    public Unit prepareSearchFilter(String searchText) {
-        return Unit.INSTANCE;
+    public ModFilter prepareSearchFilter(String searchText) {
+        return new ModFilter();
     }
     
     @Override
@@ -88,16 +117,16 @@ public final class ModArgumentType extends ArgumentType<Unit, ModArgumentType.@N
         return STYLE;
     }
     
-    protected static class ModInfoPair {
-        private static final ModInfoPair EMPTY = new ModInfoPair(null, null);
-        @Nullable
-        private final String modId;
-        @Nullable
-        private String modName;
-        
-        public ModInfoPair(@Nullable String modId, @Nullable String modName) {
-            this.modId = modId;
-            this.modName = modName;
+    public static final class ModFilter extends DictionaryFilter {
+        @Override
+        protected int test(ResultSink sink, BitSet matched, int from) {
+            NamespaceDictionary.Namespace[] namespaces = NAMESPACES.getNamespaces();
+            for (int id = from; id < namespaces.length; id++) {
+                if (sink.test(namespaces[id].modId()) || sink.test(namespaces[id].modName())) {
+                    matched.set(id);
+                }
+            }
+            return namespaces.length;
         }
     }
 }
@@ -0,0 +1,68 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.shedaniel.rei.impl.client.search.argument.type;
+
+import me.shedaniel.rei.api.client.ClientHelper;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Interns the namespaces of the stacks into dense ids, with the name of their mod resolved once.
+ * There are only a few hundred namespaces, so a search matches them all instead of the texts of every stack.
+ */
+@ApiStatus.Internal
+@Environment(EnvType.CLIENT)
+public final class NamespaceDictionary {
+    private final Map<String, Namespace> namespaces = new HashMap<>();
+    private Namespace[] byId = new Namespace[64];
+    private int size;
+    
+    public synchronized Namespace intern(String modId) {
+        Namespace namespace = namespaces.get(modId);
+        if (namespace == null) {
+            namespace = new Namespace(size, modId, ClientHelper.getInstance().getModFromModId(modId).toLowerCase(Locale.ROOT));
+            if (size == byId.length) {
+                byId = Arrays.copyOf(byId, byId.length * 2);
+            }
+            byId[size++] = namespace;
+            namespaces.put(modId, namespace);
+        }
+        return namespace;
+    }
+    
+    /**
+     * Returns every interned namespace, indexed by their ids.
+     */
+    public synchronized Namespace[] getNamespaces() {
+        return Arrays.copyOf(byId, size);
+    }
+    
+    public record Namespace(int id, String modId, String modName) {}
+}
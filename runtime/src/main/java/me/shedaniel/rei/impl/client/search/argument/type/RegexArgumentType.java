@@ -82,6 +82,16 @@ public final class RegexArgumentType extends ArgumentType<@Nullable Pattern, Str
         return STYLE;
     }
     
+    @Override
+    public boolean isPersistable() {
+        return true;
+    }
+    
+    @Override
+    public double getEstimatedCost() {
+        return 4;
+    }
+    
     @Override
     public String cacheData(EntryStack<?> stack) {
         return FormattingUtils.stripFormatting(stack.asFormattedText(CONTEXT).getString());
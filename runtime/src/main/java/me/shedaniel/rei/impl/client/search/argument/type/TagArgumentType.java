@@ -31,18 +31,21 @@ import net.fabricmc.api.Environment;
 import net.minecraft.network.chat.Style;
 import net.minecraft.network.chat.TextColor;
 import net.minecraft.tags.TagKey;
-import net.minecraft.util.Unit;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.BitSet;
 import java.util.Objects;
-import java.util.stream.Stream;
 
+/**
+ * Matches the tags of the stacks, the tags are interned into a {@link TagDictionary} and every stack caches the ids of its tags.
+ * The search text is tested against every distinct tag once per search, stacks are then matched by looking up their ids.
+ */
 @ApiStatus.Internal
 @Environment(EnvType.CLIENT)
-public final class TagArgumentType extends ArgumentType<Unit, String[]> {
-    private static final String[] EMPTY_ARRAY = new String[0];
+public final class TagArgumentType extends ArgumentType<TagArgumentType.TagFilter, int[]> {
     private static final Style STYLE = Style.EMPTY.withColor(TextColor.fromRgb(0x9efff4));
+    private static final TagDictionary DICTIONARY = new TagDictionary();
     
     @Override
     public String getName() {
@@ -66,27 +69,57 @@ public final class TagArgumentType extends ArgumentType<Unit, String[]> {
     }
     
     @Override
-    public String[] cacheData(EntryStack<?> stack) {
-        Stream<TagKey<?>> tags = stack.getTagsFor();
-        String[] array = tags.map(TagArgumentType::toString).toArray(String[]::new);
-        return array.length == 0 ? EMPTY_ARRAY : array;
+    public int[] cacheData(EntryStack<?> stack) {
+        int[] ids = stack.getTagsFor()
+                .map(TagArgumentType::toString)
+                .filter(tag -> !tag.isEmpty())
+                .mapToInt(DICTIONARY::intern)
+                .toArray();
+        return DICTIONARY.internSet(ids);
     }
     
     @Override
-    public void matches(String[] data, EntryStack<?> stack, Unit filterData, ResultSink sink) {
-        for (String tag : data) {
-            if (!tag.isEmpty() && sink.testString(tag)) {
+    public void matches(int @Nullable [] data, EntryStack<?> stack, TagFilter filterData, ResultSink sink) {
+        if (data == null || data.length == 0) return;
+        // The ids are sorted, so the last one is the newest tag
+        BitSet matched = filterData.resolve(sink, data[data.length - 1] + 1);
+        for (int id : data) {
+            if (matched.get(id)) {
+                sink.testTrue();
                 return;
             }
         }
     }
     
     @Override
-    public Unit prepareSearchFilter(String searchText) {
-        return Unit.INSTANCE;
+    public boolean isTextMatching() {
+        return true;
+    }
+    
+    @Override
+    public double getEstimatedCost() {
+        return 0.5;
+    }
+    
+    @Override
+    public TagFilter prepareSearchFilter(String searchText) {
+        return new TagFilter();
     }
     
     private static String toString(TagKey<?> tagKey) {
         return Objects.toString(tagKey.location());
     }
+    
+    public static final class TagFilter extends DictionaryFilter {
+        @Override
+        protected int test(ResultSink sink, BitSet matched, int from) {
+            String[] names = DICTIONARY.getNames();
+            for (int id = from; id < names.length; id++) {
+                if (sink.test(names[id])) {
+                    matched.set(id);
+                }
+            }
+            return names.length;
+        }
+    }
 }
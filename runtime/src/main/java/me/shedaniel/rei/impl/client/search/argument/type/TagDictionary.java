@@ -0,0 +1,93 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.shedaniel.rei.impl.client.search.argument.type;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns tag names into dense ids, and the sorted id sets of the stacks, so that stacks sharing the same tags
+ * share the same array. Ids are never reused, as cached id sets may outlive a cache reset.
+ */
+@ApiStatus.Internal
+@Environment(EnvType.CLIENT)
+final class TagDictionary {
+    private static final int[] EMPTY_SET = new int[0];
+    private final Object2IntOpenHashMap<String> ids = new Object2IntOpenHashMap<>();
+    private final Map<IntList, int[]> sets = new HashMap<>();
+    private String[] names = new String[64];
+    private int size;
+    
+    TagDictionary() {
+        this.ids.defaultReturnValue(-1);
+    }
+    
+    public synchronized int intern(String name) {
+        int id = ids.getInt(name);
+        if (id == -1) {
+            id = size++;
+            if (id == names.length) {
+                names = Arrays.copyOf(names, names.length * 2);
+            }
+            names[id] = name;
+            ids.put(name, id);
+        }
+        return id;
+    }
+    
+    /**
+     * Returns the shared sorted set of the ids, {@code ids} may be modified.
+     */
+    public synchronized int[] internSet(int[] ids) {
+        if (ids.length == 0) return EMPTY_SET;
+        Arrays.sort(ids);
+        int length = 1;
+        for (int i = 1; i < ids.length; i++) {
+            if (ids[i] != ids[length - 1]) {
+                ids[length++] = ids[i];
+            }
+        }
+        int[] set = length == ids.length ? ids : Arrays.copyOf(ids, length);
+        return sets.computeIfAbsent(IntArrayList.wrap(set), $ -> set);
+    }
+    
+    public synchronized int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the names of every interned tag, indexed by their ids.
+     */
+    public synchronized String[] getNames() {
+        return Arrays.copyOf(names, size);
+    }
+}
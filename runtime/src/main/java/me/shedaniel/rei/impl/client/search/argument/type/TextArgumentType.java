@@ -68,6 +68,21 @@ public final class TextArgumentType extends ArgumentType<Unit, String> {
         sink.testString(value);
     }
     
+    @Override
+    public boolean isPersistable() {
+        return true;
+    }
+    
+    @Override
+    public boolean isIndexable() {
+        return true;
+    }
+    
+    @Override
+    public String getIndexedText(String data) {
+        return data;
+    }
+    
     @Override
     public Unit prepareSearchFilter(String searchText) {
         return null;
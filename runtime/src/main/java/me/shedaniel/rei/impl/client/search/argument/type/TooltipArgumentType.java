@@ -116,6 +116,28 @@ public final class TooltipArgumentType extends ArgumentType<Unit, String> {
         }
     }
     
+    @Override
+    public boolean isPersistable() {
+        return true;
+    }
+    
+    @Override
+    public double getEstimatedCost() {
+        return 4;
+    }
+    
+    @Override
+    public boolean isIndexable() {
+        return true;
+    }
+    
+    @Override
+    @Nullable
+    public String getIndexedText(String data) {
+        //noinspection StringEquality
+        return data == INVALID ? null : data;
+    }
+    
     @Override
     public Unit prepareSearchFilter(String searchText) {
         return Unit.INSTANCE;
@@ -23,25 +23,33 @@
 
 package me.shedaniel.rei.impl.client.search.method.unihan;
 
-import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntList;
 import me.shedaniel.rei.api.client.search.method.CharacterUnpackingInputMethod.ExpendedChar;
 import me.shedaniel.rei.api.client.search.method.InputMethod;
 import me.shedaniel.rei.api.common.util.CollectionUtils;
+import me.shedaniel.rei.impl.client.search.argument.PhoneticText;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 
 public abstract class UniHanInputMethod implements InputMethod<IntList> {
     protected final UniHanManager manager;
-    protected Int2ObjectMap<List<ExpendedChar>> dataMap = new Int2ObjectOpenHashMap<>();
+    /**
+     * The expanded characters decoded so far, characters are only decoded from the table when they are first looked up.
+     */
+    protected final Map<Integer, List<ExpendedChar>> dataMap = new ConcurrentHashMap<>();
+    @Nullable
+    private volatile UniHanTable table;
     
     public UniHanInputMethod(UniHanManager manager) {
         this.manager = manager;
+        manager.registerField(getFieldKey());
     }
     
     protected abstract String getFieldKey();
@@ -63,26 +71,43 @@ public abstract class UniHanInputMethod implements InputMethod<IntList> {
     
     public void load() {
         try {
-            manager.load((codepoint, fieldKey, data) -> {
-                if (fieldKey.equals(getFieldKey())) {
-                    String[] strings = data.split(getFieldDelimiter());
-                    List<ExpendedChar> sequences = dataMap.computeIfAbsent(codepoint, value -> new ArrayList<>(strings.length));
-                    for (String string : strings) {
-                        sequences.addAll(asExpendedChars(string));
-                    }
-                }
-            });
+            this.table = manager.getTable(getFieldKey());
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            dataMap.clear();
+            PhoneticText.invalidate(this);
         }
     }
     
+    /**
+     * Returns the expanded characters of the code point, or an empty list if it has none or the data is not loaded.
+     */
+    protected List<ExpendedChar> getExpendedChars(int codePoint) {
+        UniHanTable table = this.table;
+        if (table == null) return List.of();
+        return dataMap.computeIfAbsent(codePoint, $ -> {
+            String data = table.get(codePoint);
+            if (data == null) return List.of();
+            String[] strings = data.split(getFieldDelimiter());
+            List<ExpendedChar> sequences = new ArrayList<>(strings.length);
+            for (String string : strings) {
+                sequences.addAll(asExpendedChars(string));
+            }
+            return sequences;
+        });
+    }
+    
     protected List<ExpendedChar> asExpendedChars(String string) {
         return List.of(new ExpendedChar(CollectionUtils.map(IntList.of(string.codePoints().toArray()), IntList::of)));
     }
     
     @Override
     public CompletableFuture<Void> dispose(Executor executor) {
-        return CompletableFuture.runAsync(dataMap::clear, executor);
+        return CompletableFuture.runAsync(() -> {
+            table = null;
+            dataMap.clear();
+            PhoneticText.invalidate(this);
+        }, executor);
     }
 }
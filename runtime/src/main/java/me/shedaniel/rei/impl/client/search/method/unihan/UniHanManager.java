@@ -23,6 +23,10 @@
 
 package me.shedaniel.rei.impl.client.search.method.unihan;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import me.shedaniel.rei.api.client.search.method.InputMethod;
 import me.shedaniel.rei.impl.common.InternalLogger;
 import org.apache.commons.io.IOUtils;
@@ -30,23 +34,34 @@ import org.apache.commons.io.LineIterator;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
 import java.util.zip.ZipInputStream;
 
 public class UniHanManager {
     private final Path unihanPath;
+    private final Set<String> fieldKeys = new LinkedHashSet<>();
+    private final Map<String, UniHanTable> tables = new HashMap<>();
+    private final Object2LongMap<String> stamps = new Object2LongOpenHashMap<>();
     
     public UniHanManager(Path unihanPath) {
         this.unihanPath = unihanPath;
     }
     
+    /**
+     * Registers a field to extract whenever the tables are rebuilt, so that every registered field is extracted in a single pass.
+     */
+    public synchronized void registerField(String fieldKey) {
+        fieldKeys.add(fieldKey);
+    }
+    
     public boolean downloaded() {
         return Files.exists(unihanPath);
     }
@@ -68,27 +83,27 @@ public class UniHanManager {
             if (parent != null) Files.createDirectories(parent);
             HttpURLConnection httpConnection = (HttpURLConnection) url.openConnection();
             long completeFileSize = httpConnection.getContentLength();
-            BufferedInputStream inputStream = new BufferedInputStream(httpConnection.getInputStream());
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            BufferedOutputStream bufferedStream = new BufferedOutputStream(outputStream, 1024);
-            byte[] data = new byte[1024];
-            long downloadedFileSize = 0;
-            int x;
-            int lastPercent = 0;
-            while ((x = inputStream.read(data, 0, 1024)) >= 0) {
-                downloadedFileSize += x;
-                double progress = (double) downloadedFileSize / (double) completeFileSize;
-                int percent = (int) (progress * 100);
-                if (percent > lastPercent) {
-                    lastPercent = percent;
-                    InternalLogger.getInstance().debug("Downloading UniHan Progress: %d%%".formatted(percent));
+            Path tempPath = unihanPath.resolveSibling(unihanPath.getFileName() + ".tmp");
+            try (BufferedInputStream inputStream = new BufferedInputStream(httpConnection.getInputStream());
+                 OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(tempPath), 65536)) {
+                byte[] data = new byte[8192];
+                long downloadedFileSize = 0;
+                int x;
+                int lastPercent = 0;
+                while ((x = inputStream.read(data, 0, data.length)) >= 0) {
+                    downloadedFileSize += x;
+                    double progress = (double) downloadedFileSize / (double) completeFileSize;
+                    int percent = (int) (progress * 100);
+                    if (percent > lastPercent) {
+                        lastPercent = percent;
+                        InternalLogger.getInstance().debug("Downloading UniHan Progress: %d%%".formatted(percent));
+                    }
+                    progressCallback.onProgress(progress);
+                    outputStream.write(data, 0, x);
                 }
-                progressCallback.onProgress(progress);
-                bufferedStream.write(data, 0, x);
             }
-            bufferedStream.close();
-            inputStream.close();
-            Files.write(unihanPath, outputStream.toByteArray(), StandardOpenOption.CREATE);
+            // Only move the archive in place once it is complete, an interrupted download is never mistaken as downloaded
+            Files.move(tempPath, unihanPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
             InternalLogger.getInstance().debug("Downloaded UniHan");
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -99,6 +114,60 @@ public class UniHanManager {
         return unihanPath;
     }
     
+    /**
+     * Returns the memory mapped table of the field, the tables of all missing or outdated registered fields
+     * are extracted from the archive if this field is missing or outdated.
+     */
+    public synchronized UniHanTable getTable(String fieldKey) throws IOException {
+        registerField(fieldKey);
+        long sourceStamp = getSourceStamp();
+        UniHanTable table = tables.get(fieldKey);
+        if (table != null && stamps.getLong(fieldKey) == sourceStamp) return table;
+        
+        Map<String, Int2ObjectMap<String>> extracting = new HashMap<>();
+        for (String key : fieldKeys) {
+            UniHanTable existing = UniHanTable.open(getTablePath(key), key, sourceStamp);
+            if (existing != null) {
+                tables.put(key, existing);
+                stamps.put(key, sourceStamp);
+            } else {
+                extracting.put(key, new Int2ObjectOpenHashMap<>());
+            }
+        }
+        
+        if (!extracting.isEmpty()) {
+            long start = System.currentTimeMillis();
+            load((codepoint, key, data) -> {
+                Int2ObjectMap<String> values = extracting.get(key);
+                if (values != null) {
+                    values.put(codepoint, data);
+                }
+            });
+            for (Map.Entry<String, Int2ObjectMap<String>> entry : extracting.entrySet()) {
+                Path path = getTablePath(entry.getKey());
+                UniHanTable.write(path, entry.getKey(), sourceStamp, entry.getValue());
+                UniHanTable extracted = UniHanTable.open(path, entry.getKey(), sourceStamp);
+                if (extracted == null) throw new IOException("Failed to read extracted UniHan table " + path);
+                tables.put(entry.getKey(), extracted);
+                stamps.put(entry.getKey(), sourceStamp);
+            }
+            InternalLogger.getInstance().debug("Extracted UniHan fields %s in %dms".formatted(extracting.keySet(), System.currentTimeMillis() - start));
+        }
+        
+        return tables.get(fieldKey);
+    }
+    
+    private Path getTablePath(String fieldKey) {
+        return unihanPath.resolveSibling("unihan-" + fieldKey + ".bin");
+    }
+    
+    /**
+     * Returns a stamp identifying the downloaded archive, tables extracted from another archive are rebuilt.
+     */
+    private long getSourceStamp() throws IOException {
+        return Files.size(unihanPath) * 31 + Files.getLastModifiedTime(unihanPath).toMillis();
+    }
+    
     public void load(DataConsumer consumer) throws IOException {
         try (ZipInputStream inputStream = new ZipInputStream(Files.newInputStream(getUnihanPath()))) {
             while (inputStream.getNextEntry() != null) {
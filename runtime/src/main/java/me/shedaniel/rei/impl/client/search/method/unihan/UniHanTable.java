@@ -0,0 +1,156 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.shedaniel.rei.impl.client.search.method.unihan;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A memory mapped table of a single UniHan field, keyed by code point.
+ * <p>
+ * The table is laid out as a header, the sorted code points, the offsets of their values and the UTF-8 encoded values,
+ * so that lookups are a binary search without parsing or holding the whole field on heap.
+ */
+public class UniHanTable {
+    private static final int MAGIC = 0x52455548;
+    private static final int VERSION = 1;
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int codePointsStart;
+    private final int offsetsStart;
+    private final int valuesStart;
+    
+    private UniHanTable(ByteBuffer buffer, int size, int codePointsStart) {
+        this.buffer = buffer;
+        this.size = size;
+        this.codePointsStart = codePointsStart;
+        this.offsetsStart = codePointsStart + size * Integer.BYTES;
+        this.valuesStart = offsetsStart + (size + 1) * Integer.BYTES;
+    }
+    
+    /**
+     * Opens the table, or returns {@code null} if it is missing, corrupted or was built from a different source.
+     */
+    @Nullable
+    public static UniHanTable open(Path path, String fieldKey, long sourceStamp) throws IOException {
+        if (!Files.isRegularFile(path)) return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Check the header with a plain read before mapping, a mapped file cannot be replaced on some platforms
+            // until it is unmapped, which would fail rebuilding a stale table
+            ByteBuffer header = ByteBuffer.allocate(16);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) return null;
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getLong() != sourceStamp) return null;
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 24 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != sourceStamp) return null;
+            byte[] key = new byte[buffer.getInt()];
+            if (key.length > buffer.remaining()) return null;
+            buffer.get(key);
+            if (!fieldKey.equals(new String(key, StandardCharsets.UTF_8))) return null;
+            int size = buffer.getInt();
+            UniHanTable table = new UniHanTable(buffer, size, buffer.position());
+            if (size < 0 || table.valuesStart > buffer.limit() || table.valuesStart + table.offset(size) != buffer.limit()) return null;
+            return table;
+        }
+    }
+    
+    /**
+     * Writes the values of a field as a table, replacing any existing table atomically.
+     */
+    public static void write(Path path, String fieldKey, long sourceStamp, Int2ObjectMap<String> values) throws IOException {
+        int[] codePoints = values.keySet().toIntArray();
+        Arrays.sort(codePoints);
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath), 65536))) {
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeLong(sourceStamp);
+            byte[] key = fieldKey.getBytes(StandardCharsets.UTF_8);
+            stream.writeInt(key.length);
+            stream.write(key);
+            stream.writeInt(codePoints.length);
+            byte[][] encoded = new byte[codePoints.length][];
+            for (int i = 0; i < codePoints.length; i++) {
+                stream.writeInt(codePoints[i]);
+                encoded[i] = values.get(codePoints[i]).getBytes(StandardCharsets.UTF_8);
+            }
+            int offset = 0;
+            stream.writeInt(offset);
+            for (byte[] bytes : encoded) {
+                stream.writeInt(offset += bytes.length);
+            }
+            for (byte[] bytes : encoded) {
+                stream.write(bytes);
+            }
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the raw value of the field for the code point, or {@code null} if the code point has no value.
+     */
+    @Nullable
+    public String get(int codePoint) {
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = buffer.getInt(codePointsStart + mid * Integer.BYTES);
+            if (value < codePoint) low = mid + 1;
+            else if (value > codePoint) high = mid - 1;
+            else return decode(mid);
+        }
+        return null;
+    }
+    
+    private int offset(int index) {
+        return buffer.getInt(offsetsStart + index * Integer.BYTES);
+    }
+    
+    private String decode(int index) {
+        int start = offset(index);
+        byte[] bytes = new byte[offset(index + 1) - start];
+        buffer.get(valuesStart + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.shedaniel.rei.impl.client.view;
+
+import me.shedaniel.rei.api.common.display.Display;
+import me.shedaniel.rei.impl.client.gui.widget.AutoCraftingCache;
+import me.shedaniel.rei.impl.client.gui.widget.AutoCraftingEvaluator;
+import me.shedaniel.rei.impl.display.DisplaySpec;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A list of displays ordered by their auto crafting results, successful displays first, then applicable displays.
+ * <p>
+ * Displays are ordered by the {@link AutoCraftingCache cached results} only, the displays about to be shown are
+ * evaluated by {@link #prepare(int, int, long)}, and the rest a few at a time by {@link #update(int, long)},
+ * which moves them as their results arrive.
+ * <p>
+ * A {@link Merged} display is ordered by the best result of its displays, and shows that display once it is evaluated.
+ */
+@ApiStatus.Internal
+public class AutoCraftingOrderedList extends ArrayList<DisplaySpec> {
+    private static final int SUCCESSFUL = 0;
+    private static final int APPLICABLE = 1;
+    private static final int OTHER = 2;
+    
+    /**
+     * A display merging several displays, shown as one of them.
+     */
+    public interface Merged extends DisplaySpec {
+        List<Display> getDisplays();
+        
+        void setRepresentative(Display display);
+    }
+    
+    public AutoCraftingOrderedList(Collection<? extends DisplaySpec> displays) {
+        super(displays);
+        sortFrom(0);
+    }
+    
+    /**
+     * Evaluates the displays from {@code from} without a cached result until the time budget runs out,
+     * and orders the displays from {@code from} by their results.
+     * The displays before {@code from} are already shown, so they are never moved.
+     *
+     * @return whether the order changed
+     */
+    public boolean update(int from, long budgetNanos) {
+        return prepare(from, from, budgetNanos);
+    }
+    
+    /**
+     * Evaluates the displays from {@code from} to {@code end} without a cached result, then the following ones
+     * until the time budget runs out, and orders the displays from {@code from} by their results.
+     * Called before the displays up to {@code end} are shown, so that they are ordered even when nothing is cached.
+     *
+     * @return whether the order changed
+     */
+    public boolean prepare(int from, int end, long budgetNanos) {
+        long deadline = System.nanoTime() + budgetNanos;
+        boolean evaluated = false;
+        for (int i = from; i < size() && (i < end || System.nanoTime() < deadline); i++) {
+            for (Display display : getDisplays(get(i))) {
+                if (AutoCraftingCache.getIfPresent(display) == null) {
+                    AutoCraftingCache.get(display);
+                    evaluated = true;
+                }
+            }
+        }
+        return evaluated && sortFrom(from);
+    }
+    
+    /**
+     * Stably moves the displays from {@code from} with successful results first, then the applicable ones,
+     * and shows the best display of the merged displays from {@code from}.
+     *
+     * @return whether the order changed
+     */
+    private boolean sortFrom(int from) {
+        if (from >= size()) return false;
+        List<List<DisplaySpec>> groups = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        for (int i = from; i < size(); i++) {
+            DisplaySpec spec = get(i);
+            int group = OTHER;
+            for (Display display : getDisplays(spec)) {
+                int displayGroup = getGroup(display);
+                if (displayGroup < group) {
+                    group = displayGroup;
+                    if (spec instanceof Merged merged) {
+                        merged.setRepresentative(display);
+                    }
+                }
+            }
+            groups.get(group).add(spec);
+        }
+        boolean changed = false;
+        int index = from;
+        for (List<DisplaySpec> group : groups) {
+            for (DisplaySpec display : group) {
+                changed |= set(index++, display) != display;
+            }
+        }
+        return changed;
+    }
+    
+    private static List<Display> getDisplays(DisplaySpec spec) {
+        return spec instanceof Merged merged ? merged.getDisplays() : List.of(spec.provideInternalDisplay());
+    }
+    
+    private static int getGroup(Display display) {
+        AutoCraftingEvaluator.AutoCraftingResult result = AutoCraftingCache.getIfPresent(display);
+        if (result == null) return OTHER;
+        if (result.successful) return SUCCESSFUL;
+        return result.hasApplicable ? APPLICABLE : OTHER;
+    }
+}
@@ -27,9 +27,7 @@ import com.google.common.base.Stopwatch;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import it.unimi.dsi.fastutil.longs.Long2LongMap;
-import it.unimi.dsi.fastutil.longs.Long2LongMaps;
-import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntList;
 import me.shedaniel.rei.api.client.config.ConfigObject;
 import me.shedaniel.rei.api.client.registry.category.CategoryRegistry;
 import me.shedaniel.rei.api.client.registry.display.DisplayCategory;
@@ -42,36 +40,25 @@ import me.shedaniel.rei.api.common.display.Display;
 import me.shedaniel.rei.api.common.display.DisplayMerger;
 import me.shedaniel.rei.api.common.entry.EntryIngredient;
 import me.shedaniel.rei.api.common.entry.EntryStack;
-import me.shedaniel.rei.api.common.entry.comparison.ComparisonContext;
-import me.shedaniel.rei.api.common.entry.type.EntryDefinition;
-import me.shedaniel.rei.api.common.entry.type.VanillaEntryTypes;
 import me.shedaniel.rei.api.common.plugins.PluginManager;
-import me.shedaniel.rei.api.common.transfer.info.MenuInfo;
-import me.shedaniel.rei.api.common.transfer.info.MenuInfoRegistry;
-import me.shedaniel.rei.api.common.transfer.info.MenuSerializationContext;
-import me.shedaniel.rei.api.common.transfer.info.stack.SlotAccessor;
 import me.shedaniel.rei.api.common.util.CollectionUtils;
 import me.shedaniel.rei.api.common.util.EntryIngredients;
 import me.shedaniel.rei.api.common.util.EntryStacks;
-import me.shedaniel.rei.impl.client.gui.craftable.CraftableFilter;
-import me.shedaniel.rei.impl.client.gui.widget.AutoCraftingEvaluator;
+import me.shedaniel.rei.impl.client.gui.craftable.CraftableIndex;
+import me.shedaniel.rei.impl.client.registry.display.DisplayIndex;
+import me.shedaniel.rei.impl.client.registry.display.DisplayRegistryImpl;
 import me.shedaniel.rei.impl.client.util.CrashReportUtils;
 import me.shedaniel.rei.impl.common.InternalLogger;
 import me.shedaniel.rei.impl.display.DisplaySpec;
 import net.minecraft.CrashReport;
 import net.minecraft.ReportedException;
-import net.minecraft.client.Minecraft;
-import net.minecraft.client.player.LocalPlayer;
 import net.minecraft.resources.ResourceLocation;
-import net.minecraft.world.inventory.AbstractContainerMenu;
-import net.minecraft.world.item.ItemStack;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 @ApiStatus.Internal
 public class ViewsImpl implements Views {
@@ -113,6 +100,7 @@ public class ViewsImpl implements Views {
         List<EntryStack<?>> recipesForStacksWildcard = CollectionUtils.flatMap(recipesForStacks, wildcardFunction);
         List<EntryStack<?>> usagesForStacksWildcard = CollectionUtils.flatMap(usagesForStacks, wildcardFunction);
         DisplayRegistry displayRegistry = DisplayRegistry.getInstance();
+        DisplayIndex index = displayRegistry instanceof DisplayRegistryImpl impl ? impl.getIndex() : null;
         
         Map<DisplayCategory<?>, List<Display>> result = Maps.newLinkedHashMap();
         for (CategoryRegistry.CategoryConfiguration<?> categoryConfiguration : CategoryRegistry.getInstance()) {
@@ -134,7 +122,7 @@ public class ViewsImpl implements Views {
                 }
                 continue;
             }
-            for (Display display : allRecipesFromCategory) {
+            for (Display display : findCandidates(index, categoryId, allRecipesFromCategory, recipesForStacks, usagesForStacks)) {
                 if (processingVisibilityHandlers && !displayRegistry.isDisplayVisible(display)) continue;
                 if (!recipesForStacks.isEmpty()) {
                     if (isRecipesFor(recipesForStacks, display)) {
@@ -150,7 +138,7 @@ public class ViewsImpl implements Views {
                 }
             }
             if (set.isEmpty() && (!recipesForStacksWildcard.isEmpty() || !usagesForStacksWildcard.isEmpty())) {
-                for (Display display : allRecipesFromCategory) {
+                for (Display display : findCandidates(index, categoryId, allRecipesFromCategory, recipesForStacksWildcard, usagesForStacksWildcard)) {
                     if (processingVisibilityHandlers && !displayRegistry.isDisplayVisible(display)) continue;
                     if (!recipesForStacksWildcard.isEmpty()) {
                         if (isRecipesFor(recipesForStacksWildcard, display)) {
@@ -217,12 +205,14 @@ public class ViewsImpl implements Views {
                 DisplayMerger<Display> merger = (DisplayMerger<Display>) entry.getKey().getDisplayMerger();
                 
                 if (merger != null) {
-                    class Wrapped implements DisplaySpec {
+                    class Wrapped implements AutoCraftingOrderedList.Merged {
                         private Display display;
+                        private final List<Display> displays = new ArrayList<>();
                         private List<ResourceLocation> ids = null;
                         
                         public Wrapped(Display display) {
                             this.display = display;
+                            this.displays.add(display);
                         }
                         
                         @Override
@@ -247,7 +237,7 @@ public class ViewsImpl implements Views {
                         public Collection<ResourceLocation> provideInternalDisplayIds() {
                             if (ids == null) {
                                 ids = new ArrayList<>();
-                                Optional<ResourceLocation> location = display.getDisplayLocation();
+                                Optional<ResourceLocation> location = displays.get(0).getDisplayLocation();
                                 if (location.isPresent()) {
                                     ids.add(location.get());
                                 }
@@ -255,7 +245,18 @@ public class ViewsImpl implements Views {
                             return ids;
                         }
                         
+                        @Override
+                        public List<Display> getDisplays() {
+                            return displays;
+                        }
+                        
+                        @Override
+                        public void setRepresentative(Display display) {
+                            this.display = display;
+                        }
+                        
                         public void add(Display display) {
+                            this.displays.add(display);
                             Optional<ResourceLocation> location = display.getDisplayLocation();
                             if (location.isPresent()) {
                                 provideInternalDisplayIds().add(location.get());
@@ -265,7 +266,7 @@ public class ViewsImpl implements Views {
                     Map<Wrapped, Wrapped> wrappedSet = new LinkedHashMap<>();
                     List<Wrapped> wrappeds = new ArrayList<>();
                     
-                    for (Display display : sortAutoCrafting(entry.getValue())) {
+                    for (Display display : entry.getValue()) {
                         Wrapped wrapped = new Wrapped(display);
                         if (wrappedSet.containsKey(wrapped)) {
                             wrappedSet.get(wrapped).add(display);
@@ -275,7 +276,8 @@ public class ViewsImpl implements Views {
                         }
                     }
                     
-                    resultSpeced.put(entry.getKey(), (List<DisplaySpec>) (List) wrappeds);
+                    // Ordered by the cached auto crafting results, the rest is evaluated while the displays are viewed
+                    resultSpeced.put(entry.getKey(), new AutoCraftingOrderedList((List<DisplaySpec>) (List) wrappeds));
                 }
             }
         }
@@ -290,6 +292,25 @@ public class ViewsImpl implements Views {
         return resultSpeced;
     }
     
+    /**
+     * Returns the displays of the category that may be recipes for or usages for the stacks, in the order of the category.
+     * Falls back to every display of the category when the displays are not indexed, or the index cannot answer the lookup.
+     */
+    private static Iterable<Display> findCandidates(@Nullable DisplayIndex index, CategoryIdentifier<?> categoryId, List<Display> allRecipesFromCategory,
+            List<EntryStack<?>> recipesFor, List<EntryStack<?>> usagesFor) {
+        if (index == null) return allRecipesFromCategory;
+        IntList positions = index.find(categoryId, recipesFor, usagesFor);
+        if (positions == null) return allRecipesFromCategory;
+        List<Display> displays = new ArrayList<>(positions.size());
+        for (int i = 0; i < positions.size(); i++) {
+            int position = positions.getInt(i);
+            if (position < allRecipesFromCategory.size()) {
+                displays.add(allRecipesFromCategory.get(position));
+            }
+        }
+        return displays;
+    }
+    
     public static boolean isRecipesFor(List<EntryStack<?>> stacks, Display display) {
         return checkUsages(stacks, display, display.getOutputEntries());
     }
@@ -312,24 +333,6 @@ public class ViewsImpl implements Views {
         return false;
     }
     
-    private static Iterable<Display> sortAutoCrafting(List<Display> displays) {
-        Set<Display> successfulDisplays = new LinkedHashSet<>();
-        Set<Display> applicableDisplays = new LinkedHashSet<>();
-        
-        for (Display display : displays) {
-            AutoCraftingEvaluator.AutoCraftingResult result = AutoCraftingEvaluator.evaluateAutoCrafting(false, false, display, null);
-            
-            if (result.successful) {
-                successfulDisplays.add(display);
-            } else if (result.hasApplicable) {
-                applicableDisplays.add(display);
-            }
-        }
-        
-        return Iterables.concat(successfulDisplays, applicableDisplays,
-                Iterables.filter(displays, display -> !successfulDisplays.contains(display) && !applicableDisplays.contains(display)));
-    }
-    
     private static <T extends Display> void generateLiveDisplays(DisplayRegistry displayRegistry, DynamicDisplayGenerator<T> generator, ViewSearchBuilder builder, Consumer<T> displayConsumer) {
         boolean processingVisibilityHandlers = builder.isProcessingVisibilityHandlers();
         
@@ -406,98 +409,7 @@ public class ViewsImpl implements Views {
     
     @Override
     public Collection<EntryStack<?>> findCraftableEntriesByMaterials() {
-        if (PluginManager.areAnyReloading()) {
-            return Collections.emptySet();
-        }
-        
-        AbstractContainerMenu menu = Minecraft.getInstance().player.containerMenu;
-        Set<EntryStack<?>> craftables = new HashSet<>();
-        boolean onlyIncludeHasMenu = false;
-        
-        for (Map.Entry<CategoryIdentifier<?>, List<Display>> entry : DisplayRegistry.getInstance().getAll().entrySet()) {
-            class InfoSerializationContext implements MenuSerializationContext<AbstractContainerMenu, LocalPlayer, Display> {
-                @Override
-                public AbstractContainerMenu getMenu() {
-                    return menu;
-                }
-                
-                @Override
-                public LocalPlayer getPlayerEntity() {
-                    return Minecraft.getInstance().player;
-                }
-                
-                @Override
-                public CategoryIdentifier<Display> getCategoryIdentifier() {
-                    return (CategoryIdentifier<Display>) entry.getKey();
-                }
-            }
-            
-            InfoSerializationContext context = new InfoSerializationContext();
-            
-            List<Display> displays = entry.getValue();
-            for (Display display : displays) {
-                try {
-                    MenuInfo<AbstractContainerMenu, Display> info = menu != null ?
-                            MenuInfoRegistry.getInstance().getClient(display, context, menu)
-                            : null;
-                    
-                    if (onlyIncludeHasMenu && info == null) {
-                        continue;
-                    }
-                    
-                    Iterable<SlotAccessor> inputSlots = info != null ? Iterables.concat(info.getInputSlots(context.withDisplay(display)), info.getInventorySlots(context.withDisplay(display))) : Collections.emptySet();
-                    int slotsCraftable = 0;
-                    boolean containsNonEmpty = false;
-                    List<EntryIngredient> requiredInput = display.getRequiredEntries();
-                    Long2LongMap invCount = new Long2LongOpenHashMap(info == null ? CraftableFilter.INSTANCE.getInvStacks() : Long2LongMaps.EMPTY_MAP);
-                    for (SlotAccessor inputSlot : inputSlots) {
-                        ItemStack stack = inputSlot.getItemStack();
-                        
-                        EntryDefinition<ItemStack> definition;
-                        try {
-                            definition = VanillaEntryTypes.ITEM.getDefinition();
-                        } catch (NullPointerException e) {
-                            break;
-                        }
-                        
-                        if (!stack.isEmpty()) {
-                            long hash = definition.hash(null, stack, ComparisonContext.FUZZY);
-                            long newCount = invCount.get(hash) + Math.max(0, stack.getCount());
-                            invCount.put(hash, newCount);
-                        }
-                    }
-                    for (EntryIngredient slot : requiredInput) {
-                        if (slot.isEmpty()) {
-                            slotsCraftable++;
-                            continue;
-                        }
-                        for (EntryStack<?> slotPossible : slot) {
-                            if (slotPossible.getType() != VanillaEntryTypes.ITEM) continue;
-                            ItemStack stack = slotPossible.castValue();
-                            long hashFuzzy = EntryStacks.hashFuzzy(slotPossible);
-                            long availableAmount = invCount.get(hashFuzzy);
-                            if (availableAmount >= stack.getCount()) {
-                                invCount.put(hashFuzzy, availableAmount - stack.getCount());
-                                containsNonEmpty = true;
-                                slotsCraftable++;
-                                break;
-                            }
-                        }
-                    }
-                    if (slotsCraftable == display.getRequiredEntries().size() && containsNonEmpty) {
-                        if (info != null && !onlyIncludeHasMenu) {
-                            onlyIncludeHasMenu = true;
-                            craftables.clear();
-                        }
-                        
-                        display.getOutputEntries().stream().flatMap(Collection::stream).collect(Collectors.toCollection(() -> craftables));
-                    }
-                } catch (Throwable t) {
-                    InternalLogger.getInstance().warn("Error while checking if display is craftable", t);
-                }
-            }
-        }
-        return craftables;
+        return CraftableIndex.INSTANCE.getCraftableEntries();
     }
     
     private static <T> boolean isStackWorkStationOfCategory(CategoryRegistry.CategoryConfiguration<?> category, EntryStack<T> stack) {
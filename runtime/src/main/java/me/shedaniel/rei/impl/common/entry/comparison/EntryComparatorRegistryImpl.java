@@ -80,6 +80,17 @@ public abstract class EntryComparatorRegistryImpl<T, S> implements EntryComparat
         return hash;
     }
     
+    /**
+     * Combines the hash of an entry with the {@link #hashOf(ComparisonContext, Object) hash of its comparators},
+     * all 64 bits of the comparator hash are kept, so distinct NBT variants keep distinct hashes.
+     */
+    public static long combineHash(long entryHash, long comparatorHash) {
+        long code = 1L;
+        code = 31L * code + entryHash;
+        code = 31L * code + comparatorHash;
+        return code;
+    }
+    
     @Override
     public boolean containsComparator(S item) {
         return !globalComparators.isEmpty() || comparators.containsKey(item);
@@ -27,9 +27,7 @@ import com.google.common.base.Predicates;
 import me.shedaniel.rei.api.common.entry.comparison.ComparisonContext;
 import me.shedaniel.rei.api.common.entry.comparison.EntryComparator;
 import me.shedaniel.rei.impl.Internals;
-import net.minecraft.nbt.CompoundTag;
-import net.minecraft.nbt.ListTag;
-import net.minecraft.nbt.Tag;
+import net.minecraft.nbt.*;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
@@ -50,6 +48,9 @@ public enum NbtHasherProviderImpl implements Internals.NbtHasherProvider {
     }
     
     private static class Hasher implements EntryComparator<Tag> {
+        private static final long SEED = 0x27D4EB2F165667C5L;
+        private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+        private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
         private final Predicate<String> filter;
         
         private Hasher(@Nullable String[] ignoredKeys) {
@@ -73,29 +74,87 @@ public enum NbtHasherProviderImpl implements Internals.NbtHasherProvider {
             return hashTag(value);
         }
         
-        private int hashTag(Tag tag) {
+        /**
+         * Hashes the tag into 64 bits by streaming its type, keys and payload through a seeded mixing function.
+         * Compound entries are combined commutatively, as their iteration order is not part of their equality.
+         */
+        private long hashTag(Tag tag) {
             if (tag == null) return 0;
-            if (tag instanceof ListTag list) return hashListTag(list);
-            if (tag instanceof CompoundTag compound) return hashCompoundTag(compound);
-            return tag.hashCode();
-        }
-        
-        private int hashListTag(ListTag tag) {
-            int i = tag.size();
-            for (Tag innerTag : tag) {
-                i = i * 31 + hashTag(innerTag);
+            long hash = round(SEED, tag.getId());
+            if (tag instanceof CompoundTag compound) {
+                hash = hashCompoundTag(hash, compound);
+            } else if (tag instanceof ListTag list) {
+                hash = round(hash, list.size());
+                for (int i = 0; i < list.size(); i++) {
+                    hash = round(hash, hashTag(list.get(i)));
+                }
+            } else if (tag instanceof StringTag string) {
+                hash = hashString(hash, string.getAsString());
+            } else if (tag instanceof FloatTag || tag instanceof DoubleTag) {
+                hash = round(hash, Double.doubleToLongBits(((NumericTag) tag).getAsDouble()));
+            } else if (tag instanceof NumericTag numeric) {
+                hash = round(hash, numeric.getAsLong());
+            } else if (tag instanceof ByteArrayTag array) {
+                byte[] bytes = array.getAsByteArray();
+                hash = round(hash, bytes.length);
+                for (byte b : bytes) {
+                    hash = round(hash, b);
+                }
+            } else if (tag instanceof IntArrayTag array) {
+                int[] ints = array.getAsIntArray();
+                hash = round(hash, ints.length);
+                for (int i : ints) {
+                    hash = round(hash, i);
+                }
+            } else if (tag instanceof LongArrayTag array) {
+                long[] longs = array.getAsLongArray();
+                hash = round(hash, longs.length);
+                for (long l : longs) {
+                    hash = round(hash, l);
+                }
+            } else {
+                hash = round(hash, tag.hashCode());
             }
-            return i;
+            return mix(hash);
         }
         
-        private int hashCompoundTag(CompoundTag tag) {
-            int i = 1;
+        private long hashCompoundTag(long hash, CompoundTag tag) {
+            long entries = 0;
+            int count = 0;
             for (Map.Entry<String, Tag> entry : tag.tags.entrySet()) {
                 if (shouldHash(entry.getKey())) {
-                    i = i * 31 + (Objects.hashCode(entry.getKey()) ^ hashTag(entry.getValue()));
+                    entries += mix(round(hashString(SEED, entry.getKey()), hashTag(entry.getValue())));
+                    count++;
                 }
             }
-            return i;
+            return round(round(hash, count), entries);
+        }
+        
+        private static long hashString(long hash, String string) {
+            int length = string.length();
+            hash = round(hash, length);
+            int i = 0;
+            for (; i + 4 <= length; i += 4) {
+                hash = round(hash, (long) string.charAt(i) | (long) string.charAt(i + 1) << 16
+                                   | (long) string.charAt(i + 2) << 32 | (long) string.charAt(i + 3) << 48);
+            }
+            for (; i < length; i++) {
+                hash = round(hash, string.charAt(i));
+            }
+            return hash;
+        }
+        
+        private static long round(long hash, long value) {
+            return Long.rotateLeft(hash + value * PRIME_2, 31) * PRIME_1;
+        }
+        
+        private static long mix(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xFF51AFD7ED558CCDL;
+            hash ^= hash >>> 33;
+            hash *= 0xC4CEB9FE1A85EC53L;
+            hash ^= hash >>> 33;
+            return hash;
         }
     }
 }
@@ -64,7 +64,7 @@ public class EntryRegistryImpl implements EntryRegistry {
     
     public EntryRegistryImpl() {
         this.entriesHash = new LongOpenHashSet();
-        this.filteredList = new PreFilteredEntryList(this, this.registryList);
+        this.filteredList = new PreFilteredEntryList(this);
         this.listeners.add(this.filteredList);
     }
     
@@ -83,7 +83,7 @@ public class EntryRegistryImpl implements EntryRegistry {
         this.listeners.clear();
         this.registryList.collectHashed().clear();
         this.entriesHash = new LongOpenHashSet();
-        this.filteredList = new PreFilteredEntryList(this, this.registryList);
+        this.filteredList = new PreFilteredEntryList(this);
         this.listeners.add(filteredList);
         this.reloading = true;
     }
@@ -90,6 +90,19 @@ public class FilteringLogic {
         return context.stacks;
     }
     
+    /**
+     * Evaluates a single rule with an already prepared cache.
+     */
+    public static Map<FilteringContextType, Set<HashedEntryStackWrapper>> hidden(FilteringRule<?> rule, Object cache, boolean log, boolean async, Collection<EntryStack<?>> entries) {
+        async = entries.size() > 100 && async;
+        FilteringContextImpl context = new FilteringContextImpl(async, entries);
+        LinkedHashMap<FilteringRule<?>, Object> caches = new LinkedHashMap<>();
+        caches.put(rule, cache);
+        filter0(log, context, caches, entries);
+        
+        return context.stacks;
+    }
+    
     private static void filter0(boolean log, FilteringContextImpl context, LinkedHashMap<FilteringRule<?>, Object> cache, Collection<EntryStack<?>> entries) {
         Stopwatch stopwatch = Stopwatch.createStarted();
         for (Map.Entry<FilteringRule<?>, Object> entry : cache.entrySet()) {
@@ -24,9 +24,9 @@
 package me.shedaniel.rei.impl.common.entry.type;
 
 import com.google.common.base.Stopwatch;
-import com.google.common.collect.AbstractIterator;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
 import it.unimi.dsi.fastutil.longs.*;
 import me.shedaniel.rei.api.client.REIRuntime;
 import me.shedaniel.rei.api.client.config.ConfigObject;
@@ -38,61 +38,71 @@ import me.shedaniel.rei.api.common.entry.EntryStack;
 import me.shedaniel.rei.api.common.util.CollectionUtils;
 import me.shedaniel.rei.api.common.util.EntryStacks;
 import me.shedaniel.rei.impl.client.entry.filtering.FilteringContextType;
+import me.shedaniel.rei.impl.client.entry.filtering.IncrementalFilteringRule;
 import me.shedaniel.rei.impl.common.InternalLogger;
 import me.shedaniel.rei.impl.common.util.HashedEntryStackWrapper;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.function.Predicate;
 
 public class PreFilteredEntryList implements FilteredEntryList {
     private final EntryRegistry registry;
-    private final EntryRegistryList list;
-    private final Map<FilteringRule<?>, DataPair> filteringData = new HashMap<>();
-    private final Long2BooleanMap cached = new Long2BooleanOpenHashMap();
-    private final List<EntryStack<?>> listView = new InternalListView();
-    private long mod = 0;
+    private final Map<FilteringRule<?>, RuleState> ruleStates = new HashMap<>();
+    /**
+     * The entries of the registry in order, mirrored from the add and remove deltas, only accessed while holding the lock.
+     */
+    private final List<HashedEntryStackWrapper> entries = new ArrayList<>();
+    private final BitSet empty = new BitSet();
+    private final BitSet visible = new BitSet();
+    @Nullable
+    private Long2IntMap positions;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
     
-    public PreFilteredEntryList(EntryRegistry registry, EntryRegistryList list) {
+    public PreFilteredEntryList(EntryRegistry registry) {
         this.registry = registry;
-        this.list = list;
-    }
-    
-    private static <T> Predicate<T> not(Predicate<? super T> target) {
-        Objects.requireNonNull(target);
-        return (Predicate<T>) target.negate();
     }
     
     @Override
     public void addEntryAfter(@Nullable EntryStack<?> afterEntry, EntryStack<?> stack, long stackHashExact) {
         if (!registry.isReloading()) {
-            refreshFilteringFor(null, List.of(stack), LongList.of(stackHashExact));
+            synchronized (this) {
+                insert(afterEntry, List.of(stack), LongList.of(stackHashExact));
+                refreshFilteringFor(null, List.of(stack), LongList.of(stackHashExact));
+            }
         }
     }
     
     @Override
     public void addEntriesAfter(@Nullable EntryStack<?> afterEntry, List<EntryStack<?>> stacks, @Nullable LongList hashes) {
         if (!registry.isReloading()) {
-            refreshFilteringFor(null, stacks, hashes);
+            synchronized (this) {
+                if (hashes == null) hashes = hash(stacks);
+                insert(afterEntry, stacks, hashes);
+                refreshFilteringFor(null, stacks, hashes);
+            }
         }
     }
     
     @Override
     public void removeEntry(EntryStack<?> stack, long hashExact) {
         if (!registry.isReloading()) {
-            removeFilteringFor(List.of(stack), LongList.of(hashExact));
+            removeFilteringFor(LongList.of(hashExact));
         }
     }
     
     @Override
     public void removeEntries(List<EntryStack<?>> stacks, @Nullable LongList hashes) {
         if (!registry.isReloading()) {
-            removeFilteringFor(stacks, hashes);
+            removeFilteringFor(hashes == null ? hash(stacks) : hashes);
         }
     }
     
+    /**
+     * Refilters every entry, rules implementing {@link IncrementalFilteringRule} are only re-evaluated
+     * if their inputs changed since the last refilter, and only for the stacks they report as changed.
+     */
     @Override
-    public void onReFilter(List<HashedEntryStackWrapper> stacks) {
+    public synchronized void onReFilter(List<HashedEntryStackWrapper> stacks) {
         ConfigObject config = ConfigObject.getInstance();
         if (config.getFilteredStackProviders() != null) {
             List<EntryStack<?>> normalizedFilteredStacks = CollectionUtils.map(config.getFilteredStackProviders(), EntryStackProvider::provide);
@@ -102,18 +112,110 @@ public class PreFilteredEntryList implements FilteredEntryList {
         }
         
         Stopwatch stopwatch = Stopwatch.createStarted();
-        refreshFilteringFor(true, null, Lists.transform(stacks, HashedEntryStackWrapper::unwrap), new AbstractLongList() {
-            @Override
-            public long getLong(int index) {
-                return stacks.get(index).hashExact();
+        if (!isSameEntries(stacks)) {
+            entries.clear();
+            entries.addAll(stacks);
+            positions = null;
+            empty.clear();
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.get(i).unwrap().isEmpty()) empty.set(i);
             }
-            
-            @Override
-            public int size() {
-                return stacks.size();
+            ruleStates.clear();
+        }
+        
+        List<FilteringRule<?>> rules = FilteringLogic.getRules();
+        ruleStates.keySet().retainAll(rules);
+        int evaluated = 0;
+        for (FilteringRule<?> rule : rules) {
+            Object cache = rule.prepareCache(entries.size() > 100);
+            RuleState state = ruleStates.get(rule);
+            if (state == null) {
+                ruleStates.put(rule, state = new RuleState());
+                evaluate(rule, state, cache, null);
+                evaluated++;
+            } else if (rule instanceof IncrementalFilteringRule<?> incrementalRule) {
+                Object inputs = ((IncrementalFilteringRule<Object>) incrementalRule).getInputs(cache);
+                if (!Objects.equals(state.inputs, inputs)) {
+                    LongCollection changed = state.cache == null || cache == null ? null : ((IncrementalFilteringRule<Object>) incrementalRule).getChangedHashes(state.cache, cache);
+                    evaluate(rule, state, cache, changed);
+                    evaluated++;
+                }
+            } else {
+                evaluate(rule, state, cache, null);
+                evaluated++;
+            }
+        }
+        
+        compose();
+        publish();
+        queueSearchUpdate();
+        InternalLogger.getInstance().debug("Refiltered entries with %d out of %d rules in %s.", evaluated, rules.size(), stopwatch.stop().toString());
+    }
+    
+    private boolean isSameEntries(List<HashedEntryStackWrapper> stacks) {
+        if (stacks.size() != entries.size()) return false;
+        for (int i = 0; i < stacks.size(); i++) {
+            if (stacks.get(i).hashExact() != entries.get(i).hashExact()) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Evaluates the rule with its prepared cache, for the stacks with the given hashes, or every stack if {@code hashes} is {@code null}.
+     */
+    private void evaluate(FilteringRule<?> rule, RuleState state, @Nullable Object cache, @Nullable LongCollection hashes) {
+        Collection<EntryStack<?>> stacks;
+        if (hashes == null) {
+            state.hidden.clear();
+            state.shown.clear();
+            stacks = Lists.transform(entries, HashedEntryStackWrapper::unwrap);
+        } else {
+            stacks = new ArrayList<>(hashes.size());
+            Long2IntMap positions = positions();
+            LongIterator iterator = hashes.iterator();
+            while (iterator.hasNext()) {
+                int position = positions.get(iterator.nextLong());
+                if (position >= 0) {
+                    state.hidden.clear(position);
+                    state.shown.clear(position);
+                    stacks.add(entries.get(position).unwrap());
+                }
             }
-        });
-        InternalLogger.getInstance().debug("Refiltered entries with %d rules in %s.", FilteringLogic.getRules().size(), stopwatch.stop().toString());
+        }
+        if (!stacks.isEmpty()) {
+            apply(state, FilteringLogic.hidden(rule, cache, true, true, stacks));
+        }
+        state.cache = cache;
+        state.inputs = rule instanceof IncrementalFilteringRule<?> incrementalRule ? ((IncrementalFilteringRule<Object>) incrementalRule).getInputs(cache) : null;
+    }
+    
+    private void apply(RuleState state, Map<FilteringContextType, Set<HashedEntryStackWrapper>> map) {
+        Long2IntMap positions = positions();
+        for (HashedEntryStackWrapper stack : map.get(FilteringContextType.HIDDEN)) {
+            int position = positions.get(stack.hashExact());
+            if (position >= 0) state.hidden.set(position);
+        }
+        for (HashedEntryStackWrapper stack : map.get(FilteringContextType.SHOWN)) {
+            int position = positions.get(stack.hashExact());
+            if (position >= 0) state.shown.set(position);
+        }
+    }
+    
+    /**
+     * Composes the visibility from the results of the rules, where the earlier rules take precedence.
+     */
+    private void compose() {
+        visible.clear();
+        visible.set(0, entries.size());
+        List<FilteringRule<?>> rules = FilteringLogic.getRules();
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            RuleState state = ruleStates.get(rules.get(i));
+            if (state != null) {
+                visible.andNot(state.hidden);
+                visible.or(state.shown);
+            }
+        }
+        visible.andNot(empty);
     }
     
     private void queueSearchUpdate() {
@@ -126,155 +228,198 @@ public class PreFilteredEntryList implements FilteredEntryList {
     }
     
     @Override
-    public void refreshFilteringFor(boolean log, @Nullable Set<FilteringRule<?>> refilterRules, Collection<EntryStack<?>> stacks, @Nullable LongCollection hashes) {
+    public synchronized void refreshFilteringFor(boolean log, @Nullable Set<FilteringRule<?>> refilterRules, Collection<EntryStack<?>> stacks, @Nullable LongCollection hashes) {
         if (hashes == null) {
-            hashes = new LongArrayList(stacks.size());
-            for (EntryStack<?> stack : stacks) {
-                hashes.add(EntryStacks.hashExact(stack));
-            }
+            hashes = hash(stacks);
         }
         
-        LongIterator hashIterator = hashes.iterator();
-        while (hashIterator.hasNext()) {
-            long hash = hashIterator.nextLong();
-            cached.remove(hash);
-        }
-        
-        List<FilteringRule<?>> rules = FilteringLogic.getRules();
-        for (int i = rules.size() - 1; i >= 0; i--) {
-            FilteringRule<?> rule = rules.get(i);
-            if (!filteringData.containsKey(rule)) filteringData.put(rule, new DataPair());
-            DataPair longPair = filteringData.get(rule);
-            LongSet hidden = longPair.hidden();
-            LongSet shown = longPair.shown();
-            boolean refilter = refilterRules == null || refilterRules.contains(rule);
-            if (refilter) {
-                if (!hidden.isEmpty()) {
-                    hidden.removeAll(hashes);
-                    mod++;
-                }
-                if (!shown.isEmpty()) {
-                    shown.removeAll(hashes);
-                    mod++;
-                }
-                Map<FilteringContextType, Set<HashedEntryStackWrapper>> map = FilteringLogic.hidden(List.of(rule), log, true, stacks);
-                Set<HashedEntryStackWrapper> hiddenWrappers = map.get(FilteringContextType.HIDDEN);
-                Set<HashedEntryStackWrapper> shownWrappers = map.get(FilteringContextType.SHOWN);
-                for (HashedEntryStackWrapper stack : hiddenWrappers) {
-                    hidden.add(stack.hashExact());
-                    cached.put(stack.hashExact(), false);
-                }
-                for (HashedEntryStackWrapper stack : shownWrappers) {
-                    shown.add(stack.hashExact());
-                    cached.put(stack.hashExact(), true);
-                }
-                if (!hiddenWrappers.isEmpty() || !shownWrappers.isEmpty()) mod++;
-            } else {
-                hashIterator = hashes.iterator();
-                while (hashIterator.hasNext()) {
-                    long hash = hashIterator.nextLong();
-                    if (hidden.contains(hash)) {
-                        cached.put(hash, false);
-                        mod++;
-                    } else if (shown.contains(hash)) {
-                        cached.put(hash, true);
-                        mod++;
-                    }
+        Long2IntMap positions = positions();
+        for (FilteringRule<?> rule : FilteringLogic.getRules()) {
+            if (refilterRules != null && !refilterRules.contains(rule)) continue;
+            RuleState state = ruleStates.computeIfAbsent(rule, $ -> new RuleState());
+            LongIterator hashIterator = hashes.iterator();
+            while (hashIterator.hasNext()) {
+                int position = positions.get(hashIterator.nextLong());
+                if (position >= 0) {
+                    state.hidden.clear(position);
+                    state.shown.clear(position);
                 }
             }
+            apply(state, FilteringLogic.hidden(List.of(rule), log, true, stacks));
         }
         
+        compose();
+        publish();
         queueSearchUpdate();
     }
     
-    private void removeFilteringFor(List<EntryStack<?>> stacks, @Nullable LongList hashes) {
-        if (hashes == null) {
-            hashes = new LongArrayList(stacks.size());
-            for (EntryStack<?> stack : stacks) {
-                hashes.add(EntryStacks.hashExact(stack));
+    private static LongList hash(Collection<EntryStack<?>> stacks) {
+        LongList hashes = new LongArrayList(stacks.size());
+        for (EntryStack<?> stack : stacks) {
+            hashes.add(EntryStacks.hashExact(stack));
+        }
+        return hashes;
+    }
+    
+    private synchronized void removeFilteringFor(LongList hashes) {
+        Long2IntMap positions = positions();
+        IntList removed = new IntArrayList(hashes.size());
+        for (int i = 0; i < hashes.size(); i++) {
+            int position = positions.get(hashes.getLong(i));
+            if (position >= 0) removed.add(position);
+        }
+        if (removed.isEmpty()) return;
+        removed.sort(null);
+        // Compact the entries in a single pass, then the bitsets the same way
+        int to = removed.getInt(0);
+        for (int from = to, next = 0; from < entries.size(); from++) {
+            if (next < removed.size() && removed.getInt(next) == from) {
+                next++;
+                continue;
             }
+            entries.set(to++, entries.get(from));
+        }
+        entries.subList(to, entries.size()).clear();
+        for (BitSet bitSet : bitSets()) {
+            remove(bitSet, removed);
         }
+        this.positions = null;
         
-        removeFilteringFor(hashes);
+        publish();
     }
     
-    private void removeFilteringFor(LongList hashes) {
-        for (DataPair value : filteringData.values()) {
-            value.hidden().removeAll(hashes);
-            value.shown().removeAll(hashes);
+    /**
+     * Mirrors {@link EntryRegistryList#addAll(int, List, LongList)}, inserting the entries at the position of {@code afterEntry}.
+     */
+    private void insert(@Nullable EntryStack<?> afterEntry, List<EntryStack<?>> stacks, LongList hashes) {
+        int index = afterEntry == null ? -1 : positions().get(EntryStacks.hashExact(afterEntry));
+        if (index < 0) index = entries.size();
+        List<HashedEntryStackWrapper> wrappers = new ArrayList<>(stacks.size());
+        for (int i = 0; i < stacks.size(); i++) {
+            wrappers.add(new HashedEntryStackWrapper(stacks.get(i), hashes.getLong(i)));
         }
-        
-        LongListIterator hashIterator = hashes.iterator();
-        while (hashIterator.hasNext()) {
-            long hash = hashIterator.nextLong();
-            cached.remove(hash);
+        entries.addAll(index, wrappers);
+        for (BitSet bitSet : bitSets()) {
+            shift(bitSet, index, wrappers.size());
+        }
+        for (int i = 0; i < wrappers.size(); i++) {
+            if (wrappers.get(i).unwrap().isEmpty()) empty.set(index + i);
+        }
+        positions = null;
+    }
+    
+    private List<BitSet> bitSets() {
+        List<BitSet> bitSets = new ArrayList<>(2 + ruleStates.size() * 2);
+        bitSets.add(empty);
+        bitSets.add(visible);
+        for (RuleState state : ruleStates.values()) {
+            bitSets.add(state.hidden);
+            bitSets.add(state.shown);
+        }
+        return bitSets;
+    }
+    
+    /**
+     * Shifts the bits from {@code index} by {@code count} positions.
+     */
+    private static void shift(BitSet bitSet, int index, int count) {
+        for (int i = bitSet.length() - 1; i >= index; i = bitSet.previousSetBit(i - 1)) {
+            bitSet.clear(i);
+            bitSet.set(i + count);
+        }
+    }
+    
+    /**
+     * Removes the bits at the sorted positions, shifting the following bits back.
+     */
+    private static void remove(BitSet bitSet, IntList removed) {
+        int length = bitSet.length();
+        int to = removed.getInt(0);
+        for (int from = to, next = 0; from < length; from++) {
+            if (next < removed.size() && removed.getInt(next) == from) {
+                next++;
+                continue;
+            }
+            bitSet.set(to++, bitSet.get(from));
         }
+        if (to < length) bitSet.clear(to, length);
     }
     
+    private Long2IntMap positions() {
+        Long2IntMap positions = this.positions;
+        if (positions == null) {
+            positions = new Long2IntOpenHashMap(entries.size());
+            positions.defaultReturnValue(-1);
+            for (int i = 0; i < entries.size(); i++) {
+                positions.put(entries.get(i).hashExact(), i);
+            }
+            this.positions = positions;
+        }
+        return positions;
+    }
+    
+    private void publish() {
+        EntryStack<?>[] stacks = new EntryStack<?>[visible.cardinality()];
+        int index = 0;
+        for (int i = visible.nextSetBit(0); i >= 0 && i < entries.size(); i = visible.nextSetBit(i + 1)) {
+            stacks[index++] = entries.get(i).unwrap();
+        }
+        Snapshot previous = this.snapshot;
+        this.snapshot = new Snapshot(index == stacks.length ? stacks : Arrays.copyOf(stacks, index), previous.version() + 1);
+    }
+    
+    /**
+     * Returns the current snapshot of the filtered entries, the returned list never changes once published.
+     */
     @Override
     public List<EntryStack<?>> getList() {
-        return listView;
+        return snapshot;
+    }
+    
+    @Override
+    public synchronized boolean isFiltered(EntryStack<?> stack, long hashExact) {
+        if (stack.isEmpty()) return false;
+        int position = positions().get(hashExact);
+        return position < 0 || visible.get(position);
     }
     
-    private class InternalListView extends AbstractList<EntryStack<?>> {
-        private long prevMod = -1;
-        private List<EntryStack<?>> stacks;
+    /**
+     * An immutable snapshot of the filtered entries, published on every change.
+     */
+    private static final class Snapshot extends AbstractList<EntryStack<?>> implements RandomAccess {
+        private static final Snapshot EMPTY = new Snapshot(new EntryStack<?>[0], 0);
+        private final EntryStack<?>[] stacks;
+        private final long version;
         
-        @Override
-        public EntryStack<?> get(int index) {
-            if (prevMod == mod) {
-                return stacks.get(index);
-            }
-            
-            if (index < list.size() / 5) {
-                return Iterators.get(iterator(), index);
-            }
-            
-            stacks = Lists.newArrayList(iterator());
-            prevMod = mod;
-            return stacks.get(index);
+        private Snapshot(EntryStack<?>[] stacks, long version) {
+            this.stacks = stacks;
+            this.version = version;
+        }
+        
+        public long version() {
+            return version;
         }
         
         @Override
-        public int size() {
-            if (prevMod != mod) {
-                stacks = Lists.newArrayList(iterator());
-                prevMod = mod;
-            }
-            
-            return stacks.size();
+        public EntryStack<?> get(int index) {
+            return stacks[index];
         }
         
         @Override
-        public Iterator<EntryStack<?>> iterator() {
-            if (prevMod == mod) {
-                return stacks.iterator();
-            }
-            
-            Iterator<HashedEntryStackWrapper> iterator = list.collectHashed().iterator();
-            return new AbstractIterator<>() {
-                @Nullable
-                @Override
-                protected EntryStack<?> computeNext() {
-                    while (iterator.hasNext()) {
-                        HashedEntryStackWrapper wrapper = iterator.next();
-                        if (isFiltered(wrapper.unwrap(), wrapper.hashExact())) return wrapper.unwrap();
-                    }
-                    
-                    return endOfData();
-                }
-            };
+        public int size() {
+            return stacks.length;
         }
     }
     
-    @Override
-    public boolean isFiltered(EntryStack<?> stack, long hashExact) {
-        return !stack.isEmpty() && cached.getOrDefault(hashExact, true);
-    }
-    
-    private record DataPair(LongSet hidden, LongSet shown) {
-        private DataPair() {
-            this(new LongOpenHashSet(), new LongOpenHashSet());
-        }
+    /**
+     * The results of a rule as bitsets over the positions of the entries.
+     */
+    private static final class RuleState {
+        private final BitSet hidden = new BitSet();
+        private final BitSet shown = new BitSet();
+        @Nullable
+        private Object cache;
+        @Nullable
+        private Object inputs;
     }
 }
@@ -0,0 +1,149 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.shedaniel.rei.impl.common.transfer;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import me.shedaniel.rei.api.common.transfer.RecipeFinder;
+import me.shedaniel.rei.api.common.util.EntryStacks;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.crafting.Ingredient;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link RecipeFinder} keyed by the {@link EntryStacks#hashFuzzy(me.shedaniel.rei.api.common.entry.EntryStack) fuzzy hash}
+ * of the stacks, so that stacks of the same item with different NBT are kept apart.
+ * <p>
+ * The item id based methods of {@link RecipeFinder} are still populated, for populators querying the finder.
+ */
+@ApiStatus.Internal
+public class EntryRecipeFinder extends RecipeFinder {
+    private final Long2IntMap indices = new Long2IntOpenHashMap();
+    private final List<ItemStack> stacks = new ArrayList<>();
+    private final IntArrayList amounts = new IntArrayList();
+    
+    public EntryRecipeFinder() {
+        this.indices.defaultReturnValue(-1);
+    }
+    
+    @Override
+    public void addItem(ItemStack stack, int count) {
+        super.addItem(stack, count);
+        if (!stack.isEmpty()) {
+            long hash = EntryStacks.hashFuzzy(EntryStacks.of(stack));
+            int index = indices.get(hash);
+            if (index == -1) {
+                indices.put(hash, stacks.size());
+                ItemStack copy = stack.copy();
+                copy.setCount(1);
+                stacks.add(copy);
+                amounts.add(Math.min(count, stack.getCount()));
+            } else {
+                amounts.set(index, amounts.getInt(index) + Math.min(count, stack.getCount()));
+            }
+        }
+    }
+    
+    @Override
+    public void clear() {
+        super.clear();
+        this.indices.clear();
+        this.stacks.clear();
+        this.amounts.clear();
+    }
+    
+    /**
+     * Matches the ingredients against the stacks in the finder, the returned matcher can be reused
+     * for any amount of crafts as long as the finder is not modified.
+     *
+     * @param ingredients the ingredients of the recipe, empty ingredients are skipped
+     * @return the matcher of the ingredients
+     */
+    public Matcher match(List<Ingredient> ingredients) {
+        return new Matcher(ingredients);
+    }
+    
+    public class Matcher {
+        private final List<Ingredient> ingredients;
+        private final IngredientFlow flow;
+        private final int[] assignment;
+        
+        private Matcher(List<Ingredient> ingredients) {
+            this.ingredients = ingredients;
+            int[] amounts = EntryRecipeFinder.this.amounts.toIntArray();
+            List<int[]> candidates = new ArrayList<>(ingredients.size());
+            IntArrayList ingredientCandidates = new IntArrayList();
+            for (Ingredient ingredient : ingredients) {
+                if (ingredient.isEmpty()) continue;
+                ingredientCandidates.clear();
+                for (int item = 0; item < amounts.length; item++) {
+                    if (amounts[item] > 0 && ingredient.test(stacks.get(item))) {
+                        ingredientCandidates.add(item);
+                    }
+                }
+                candidates.add(ingredientCandidates.toIntArray());
+            }
+            this.flow = new IngredientFlow(candidates.toArray(new int[0][]), amounts);
+            this.assignment = new int[candidates.size()];
+        }
+        
+        /**
+         * Returns the maximum amount of crafts, up to {@code limit}, that the finder has the stacks for.
+         */
+        public int countCrafts(int limit) {
+            return flow.countCrafts(limit);
+        }
+        
+        /**
+         * Finds the stacks to use for the amount of crafts.
+         *
+         * @param crafts the amount of crafts
+         * @param result the list to fill with a stack of count 1 for every ingredient, empty for empty ingredients, or {@code null}
+         * @return whether the finder has the stacks for the amount of crafts
+         */
+        public boolean find(int crafts, @Nullable List<ItemStack> result) {
+            if (!flow.solve(crafts, result == null ? null : assignment)) {
+                return false;
+            }
+            if (result != null) {
+                result.clear();
+                int index = 0;
+                for (Ingredient ingredient : ingredients) {
+                    if (ingredient.isEmpty()) {
+                        result.add(ItemStack.EMPTY);
+                    } else {
+                        result.add(crafts <= 0 ? ItemStack.EMPTY : stacks.get(assignment[index++]));
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
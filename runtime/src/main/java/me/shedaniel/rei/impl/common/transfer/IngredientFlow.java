@@ -0,0 +1,195 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package me.shedaniel.rei.impl.common.transfer;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Assigns every ingredient of a recipe a single item, so that no item is assigned to more ingredients
+ * than its amount can fill for the requested amount of crafts.
+ * <p>
+ * This is solved as a maximum flow from the ingredients to the items, the graph is built once and only
+ * the capacities of the items change between solves.
+ */
+@ApiStatus.Internal
+public final class IngredientFlow {
+    private final int ingredientCount;
+    private final int[] amounts;
+    private final int maxCrafts;
+    private final int source;
+    private final int sink;
+    private final int[] head;
+    private final int[] next;
+    private final int[] to;
+    private final int[] capacity;
+    private final int[] level;
+    private final int[] iterator;
+    private final int[] queue;
+    private int edgeCount;
+    
+    /**
+     * @param candidates the indices of the items usable by every ingredient
+     * @param amounts    the available amount of every item
+     */
+    public IngredientFlow(int[][] candidates, int[] amounts) {
+        this.ingredientCount = candidates.length;
+        this.amounts = amounts;
+        int nodes = ingredientCount + amounts.length + 2;
+        this.source = nodes - 2;
+        this.sink = nodes - 1;
+        int edges = ingredientCount + amounts.length;
+        for (int[] candidate : candidates) {
+            edges += candidate.length;
+        }
+        this.head = new int[nodes];
+        Arrays.fill(head, -1);
+        this.next = new int[edges * 2];
+        this.to = new int[edges * 2];
+        this.capacity = new int[edges * 2];
+        this.level = new int[nodes];
+        this.iterator = new int[nodes];
+        this.queue = new int[nodes];
+        
+        // Ingredients come first, so the edge of every ingredient to its items can be found from the ingredient
+        int maxCrafts = Integer.MAX_VALUE;
+        for (int ingredient = 0; ingredient < ingredientCount; ingredient++) {
+            addEdge(source, ingredient);
+            int ingredientMax = 0;
+            for (int item : candidates[ingredient]) {
+                addEdge(ingredient, ingredientCount + item);
+                ingredientMax = Math.max(ingredientMax, amounts[item]);
+            }
+            maxCrafts = Math.min(maxCrafts, ingredientMax);
+        }
+        for (int item = 0; item < amounts.length; item++) {
+            addEdge(ingredientCount + item, sink);
+        }
+        this.maxCrafts = maxCrafts;
+    }
+    
+    private void addEdge(int from, int into) {
+        to[edgeCount] = into;
+        next[edgeCount] = head[from];
+        head[from] = edgeCount++;
+        to[edgeCount] = from;
+        next[edgeCount] = head[into];
+        head[into] = edgeCount++;
+    }
+    
+    /**
+     * Returns the maximum amount of crafts, up to {@code limit}, that every ingredient can be assigned an item for.
+     */
+    public int countCrafts(int limit) {
+        // Nothing to assign, every amount of crafts can be assigned
+        if (ingredientCount == 0) return limit;
+        int low = 0, high = Math.min(limit, maxCrafts);
+        while (low < high) {
+            // In long arithmetic, as the bounds may be close to the integer limits
+            int mid = (int) (((long) low + high + 1) >>> 1);
+            if (solve(mid, null)) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Assigns every ingredient an item for the amount of crafts.
+     *
+     * @param assignment the array to fill with the index of the item assigned to every ingredient, or {@code null}
+     * @return whether every ingredient is assigned an item
+     */
+    public boolean solve(int crafts, @Nullable int[] assignment) {
+        if (crafts <= 0) return true;
+        if (crafts > maxCrafts) return false;
+        reset(crafts);
+        int flow = 0;
+        while (flow < ingredientCount && buildLevels()) {
+            System.arraycopy(head, 0, iterator, 0, head.length);
+            int pushed;
+            while ((pushed = augment(source, Integer.MAX_VALUE)) > 0) {
+                flow += pushed;
+            }
+        }
+        if (flow < ingredientCount) return false;
+        if (assignment != null) {
+            for (int ingredient = 0; ingredient < ingredientCount; ingredient++) {
+                for (int edge = head[ingredient]; edge != -1; edge = next[edge]) {
+                    // Forward edges to items are saturated when the ingredient is assigned to the item
+                    if ((edge & 1) == 0 && capacity[edge] == 0) {
+                        assignment[ingredient] = to[edge] - ingredientCount;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+    
+    private void reset(int crafts) {
+        for (int edge = 0; edge < edgeCount; edge += 2) {
+            int from = to[edge + 1];
+            capacity[edge] = from >= ingredientCount && from != source ? amounts[from - ingredientCount] / crafts : 1;
+            capacity[edge + 1] = 0;
+        }
+    }
+    
+    private boolean buildLevels() {
+        Arrays.fill(level, -1);
+        int start = 0, end = 0;
+        queue[end++] = source;
+        level[source] = 0;
+        while (start < end) {
+            int node = queue[start++];
+            for (int edge = head[node]; edge != -1; edge = next[edge]) {
+                if (capacity[edge] > 0 && level[to[edge]] < 0) {
+                    level[to[edge]] = level[node] + 1;
+                    queue[end++] = to[edge];
+                }
+            }
+        }
+        return level[sink] >= 0;
+    }
+    
+    private int augment(int node, int limit) {
+        if (node == sink) return limit;
+        for (; iterator[node] != -1; iterator[node] = next[iterator[node]]) {
+            int edge = iterator[node];
+            if (capacity[edge] > 0 && level[to[edge]] == level[node] + 1) {
+                int pushed = augment(to[edge], Math.min(limit, capacity[edge]));
+                if (pushed > 0) {
+                    capacity[edge] -= pushed;
+                    capacity[edge ^ 1] += pushed;
+                    return pushed;
+                }
+            }
+        }
+        return 0;
+    }
+}
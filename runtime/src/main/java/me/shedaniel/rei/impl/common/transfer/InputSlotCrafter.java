@@ -23,11 +23,11 @@
 
 package me.shedaniel.rei.impl.common.transfer;
 
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
 import me.shedaniel.rei.api.common.category.CategoryIdentifier;
 import me.shedaniel.rei.api.common.display.Display;
-import me.shedaniel.rei.api.common.transfer.RecipeFinder;
+import me.shedaniel.rei.api.common.entry.comparison.ComparisonContext;
+import me.shedaniel.rei.api.common.entry.comparison.ItemComparatorRegistry;
 import me.shedaniel.rei.api.common.transfer.info.MenuInfo;
 import me.shedaniel.rei.api.common.transfer.info.MenuInfoContext;
 import me.shedaniel.rei.api.common.transfer.info.MenuInfoRegistry;
@@ -38,13 +38,12 @@ import net.minecraft.nbt.CompoundTag;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.Container;
 import net.minecraft.world.inventory.AbstractContainerMenu;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.crafting.Ingredient;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Iterator;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
 
 public class InputSlotCrafter<T extends AbstractContainerMenu, C extends Container, D extends Display> implements MenuInfoContext<T, ServerPlayer, D> {
     protected CategoryIdentifier<D> category;
@@ -52,6 +51,11 @@ public class InputSlotCrafter<T extends AbstractContainerMenu, C extends Contain
     protected MenuInfo<T, D> menuInfo;
     private Iterable<SlotAccessor> inputStacks;
     private Iterable<SlotAccessor> inventoryStacks;
+    /**
+     * The eligible inventory slots by item, only present while the recipe is aligned to the grid.
+     */
+    @Nullable
+    private Map<Item, List<SlotAccessor>> inventoryIndex;
     private ServerPlayer player;
     
     private InputSlotCrafter(CategoryIdentifier<D> category, T container) {
@@ -79,15 +83,17 @@ public class InputSlotCrafter<T extends AbstractContainerMenu, C extends Contain
         // Return the already placed items on the grid
         this.cleanInputs();
         
-        RecipeFinder recipeFinder = new RecipeFinder();
+        EntryRecipeFinder recipeFinder = new EntryRecipeFinder();
         this.menuInfo.getRecipeFinderPopulator().populate(this, recipeFinder);
         NonNullList<Ingredient> ingredients = NonNullList.create();
         for (List<ItemStack> itemStacks : this.menuInfo.getInputs(this, true)) {
             ingredients.add(CollectionUtils.toIngredient(itemStacks));
         }
         
-        if (recipeFinder.findRecipe(ingredients, null)) {
-            this.fillInputSlots(recipeFinder, ingredients, hasShift);
+        // Match the ingredients once, and reuse the matching for every amount of crafts
+        EntryRecipeFinder.Matcher matcher = recipeFinder.match(ingredients);
+        if (matcher.find(1, null)) {
+            this.fillInputSlots(matcher, hasShift);
         } else {
             this.cleanInputs();
             this.menuInfo.markDirty(this);
@@ -97,60 +103,71 @@ public class InputSlotCrafter<T extends AbstractContainerMenu, C extends Contain
         this.menuInfo.markDirty(this);
     }
     
-    public void alignRecipeToGrid(Iterable<SlotAccessor> inputStacks, Iterator<Integer> recipeItemIds, int craftsAmount) {
+    public void alignRecipeToGrid(Iterable<SlotAccessor> inputStacks, Iterator<ItemStack> recipeStacks, int craftsAmount) {
         for (SlotAccessor inputStack : inputStacks) {
-            if (!recipeItemIds.hasNext()) {
+            if (!recipeStacks.hasNext()) {
                 return;
             }
             
-            this.acceptAlignedInput(recipeItemIds.next(), inputStack, craftsAmount);
+            this.acceptAlignedInput(recipeStacks.next(), inputStack, craftsAmount);
         }
     }
     
-    public void acceptAlignedInput(Integer recipeItemId, SlotAccessor inputStack, int craftsAmount) {
-        ItemStack toBeTakenStack = RecipeFinder.getStackFromId(recipeItemId);
+    public void acceptAlignedInput(ItemStack toBeTakenStack, SlotAccessor inputStack, int craftsAmount) {
         if (!toBeTakenStack.isEmpty()) {
-            for (int i = 0; i < craftsAmount; ++i) {
-                this.fillInputSlot(inputStack, toBeTakenStack);
-            }
+            this.fillInputSlot(inputStack, toBeTakenStack, craftsAmount);
         }
     }
     
     protected void fillInputSlot(SlotAccessor slot, ItemStack toBeTakenStack) {
-        SlotAccessor takenSlot = this.takeInventoryStack(toBeTakenStack);
-        if (takenSlot != null) {
+        this.fillInputSlot(slot, toBeTakenStack, 1);
+    }
+    
+    /**
+     * Moves up to {@code amount} items into the slot, taking as much as possible from every matching inventory slot in order.
+     */
+    protected void fillInputSlot(SlotAccessor slot, ItemStack toBeTakenStack, int amount) {
+        while (amount > 0) {
+            SlotAccessor takenSlot = this.takeInventoryStack(toBeTakenStack);
+            if (takenSlot == null) return;
             ItemStack takenStack = takenSlot.getItemStack().copy();
-            if (!takenStack.isEmpty()) {
-                if (takenStack.getCount() > 1) {
-                    takenSlot.takeStack(1);
-                } else {
-                    takenSlot.setItemStack(ItemStack.EMPTY);
-                }
-                
-                takenStack.setCount(1);
-                if (slot.getItemStack().isEmpty()) {
-                    slot.setItemStack(takenStack);
-                } else {
-                    slot.getItemStack().grow(1);
-                }
+            int taking = Math.min(amount, takenStack.getCount());
+            if (taking < takenStack.getCount()) {
+                takenSlot.takeStack(taking);
+            } else {
+                takenSlot.setItemStack(ItemStack.EMPTY);
+            }
+            
+            takenStack.setCount(taking);
+            if (slot.getItemStack().isEmpty()) {
+                slot.setItemStack(takenStack);
+            } else {
+                slot.getItemStack().grow(taking);
             }
+            amount -= taking;
         }
     }
     
-    protected void fillInputSlots(RecipeFinder recipeFinder, NonNullList<Ingredient> ingredients, boolean hasShift) {
-        int recipeCrafts = recipeFinder.countRecipeCrafts(ingredients, null);
-        int amountToFill = hasShift ? recipeCrafts : 1;
-        IntList recipeItemIds = new IntArrayList();
-        if (recipeFinder.findRecipe(ingredients, recipeItemIds, amountToFill)) {
+    protected void fillInputSlots(EntryRecipeFinder.Matcher matcher, boolean hasShift) {
+        int amountToFill = hasShift ? matcher.countCrafts(Integer.MAX_VALUE) : 1;
+        List<ItemStack> recipeStacks = new ArrayList<>();
+        if (matcher.find(amountToFill, recipeStacks)) {
             int finalCraftsAmount = amountToFill;
             
-            for (int itemId : recipeItemIds) {
-                finalCraftsAmount = Math.min(finalCraftsAmount, RecipeFinder.getStackFromId(itemId).getMaxStackSize());
+            for (ItemStack recipeStack : recipeStacks) {
+                if (!recipeStack.isEmpty()) {
+                    finalCraftsAmount = Math.min(finalCraftsAmount, recipeStack.getMaxStackSize());
+                }
             }
             
-            if (recipeFinder.findRecipe(ingredients, recipeItemIds, finalCraftsAmount)) {
-                this.cleanInputs();
-                this.alignRecipeToGrid(inputStacks, recipeItemIds.iterator(), finalCraftsAmount);
+            // The stacks found for more crafts are enough for fewer crafts, no need to find them again
+            this.cleanInputs();
+            // Index the inventory once the inputs are returned, instead of scanning it for every taken stack
+            this.inventoryIndex = this.indexInventory();
+            try {
+                this.alignRecipeToGrid(inputStacks, recipeStacks.iterator(), finalCraftsAmount);
+            } finally {
+                this.inventoryIndex = null;
             }
         }
     }
@@ -159,9 +176,21 @@ public class InputSlotCrafter<T extends AbstractContainerMenu, C extends Contain
         this.menuInfo.getInputCleanHandler().clean(this);
     }
     
+    private Map<Item, List<SlotAccessor>> indexInventory() {
+        Map<Item, List<SlotAccessor>> index = new Reference2ObjectOpenHashMap<>();
+        for (SlotAccessor inventoryStack : inventoryStacks) {
+            ItemStack itemStack = inventoryStack.getItemStack();
+            if (!itemStack.isEmpty()) {
+                index.computeIfAbsent(itemStack.getItem(), item -> new ArrayList<>()).add(inventoryStack);
+            }
+        }
+        return index;
+    }
+    
     @Nullable
     public SlotAccessor takeInventoryStack(ItemStack itemStack) {
-        for (SlotAccessor inventoryStack : inventoryStacks) {
+        Iterable<SlotAccessor> candidates = inventoryIndex == null ? inventoryStacks : inventoryIndex.getOrDefault(itemStack.getItem(), List.of());
+        for (SlotAccessor inventoryStack : candidates) {
             ItemStack itemStack1 = inventoryStack.getItemStack();
             if (!itemStack1.isEmpty() && areItemsEqual(itemStack, itemStack1) && !itemStack1.isDamaged() && !itemStack1.isEnchanted() && !itemStack1.hasCustomHoverName()) {
                 return inventoryStack;
@@ -172,7 +201,9 @@ public class InputSlotCrafter<T extends AbstractContainerMenu, C extends Contain
     }
     
     private static boolean areItemsEqual(ItemStack stack1, ItemStack stack2) {
-        return stack1.getItem() == stack2.getItem() && ItemStack.tagMatches(stack1, stack2);
+        // Same as the fuzzy comparison of the stacks in EntryRecipeFinder
+        return stack1.getItem() == stack2.getItem() && ItemComparatorRegistry.getInstance().hashOf(ComparisonContext.FUZZY, stack1)
+                                                       == ItemComparatorRegistry.getInstance().hashOf(ComparisonContext.FUZZY, stack2);
     }
     
     @Override
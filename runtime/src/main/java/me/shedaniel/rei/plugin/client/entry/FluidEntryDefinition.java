@@ -45,6 +45,7 @@ import me.shedaniel.rei.api.common.entry.comparison.FluidComparatorRegistry;
 import me.shedaniel.rei.api.common.entry.type.EntryDefinition;
 import me.shedaniel.rei.api.common.entry.type.EntryType;
 import me.shedaniel.rei.api.common.entry.type.VanillaEntryTypes;
+import me.shedaniel.rei.impl.common.entry.comparison.EntryComparatorRegistryImpl;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.ChatFormatting;
@@ -155,10 +156,7 @@ public class FluidEntryDefinition implements EntryDefinition<FluidStack>, EntryS
     
     @Override
     public long hash(EntryStack<FluidStack> entry, FluidStack value, ComparisonContext context) {
-        int code = 1;
-        code = 31 * code + value.getFluid().hashCode();
-        code = 31 * code + Long.hashCode(FluidComparatorRegistry.getInstance().hashOf(context, value));
-        return code;
+        return EntryComparatorRegistryImpl.combineHash(value.getFluid().hashCode(), FluidComparatorRegistry.getInstance().hashOf(context, value));
     }
     
     @Override
@@ -46,6 +46,7 @@ import me.shedaniel.rei.api.common.entry.comparison.ItemComparatorRegistry;
 import me.shedaniel.rei.api.common.entry.type.EntryDefinition;
 import me.shedaniel.rei.api.common.entry.type.EntryType;
 import me.shedaniel.rei.api.common.entry.type.VanillaEntryTypes;
+import me.shedaniel.rei.impl.common.entry.comparison.EntryComparatorRegistryImpl;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.CrashReport;
@@ -144,10 +145,7 @@ public class ItemEntryDefinition implements EntryDefinition<ItemStack>, EntrySer
     
     @Override
     public long hash(EntryStack<ItemStack> entry, ItemStack value, ComparisonContext context) {
-        int code = 1;
-        code = 31 * code + System.identityHashCode(value.getItem());
-        code = 31 * code + Long.hashCode(ItemComparatorRegistry.getInstance().hashOf(context, value));
-        return code;
+        return EntryComparatorRegistryImpl.combineHash(System.identityHashCode(value.getItem()), ItemComparatorRegistry.getInstance().hashOf(context, value));
     }
     
     @Override
@@ -80,6 +80,8 @@ public class FilteredStacksVisibilityHandler implements DisplayVisibilityPredica
             filteringRules = null;
             cache = null;
         }
+        
+        DisplayRegistry.getInstance().invalidateDisplayVisibility();
     }
     
     public void cacheExisting() {
@@ -0,0 +1,190 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import dev.architectury.event.CompoundEventResult;
+import it.unimi.dsi.fastutil.ints.IntList;
+import me.shedaniel.rei.api.client.entry.renderer.EntryRenderer;
+import me.shedaniel.rei.api.common.category.CategoryIdentifier;
+import me.shedaniel.rei.api.common.display.Display;
+import me.shedaniel.rei.api.common.entry.EntryIngredient;
+import me.shedaniel.rei.api.common.entry.EntrySerializer;
+import me.shedaniel.rei.api.common.entry.EntryStack;
+import me.shedaniel.rei.api.common.entry.comparison.ComparisonContext;
+import me.shedaniel.rei.api.common.entry.type.EntryDefinition;
+import me.shedaniel.rei.api.common.entry.type.EntryType;
+import me.shedaniel.rei.impl.Internals;
+import me.shedaniel.rei.impl.client.registry.display.DisplayIndex;
+import me.shedaniel.rei.impl.common.category.CategoryIdentifierImpl;
+import me.shedaniel.rei.impl.common.entry.EntryIngredientImpl;
+import me.shedaniel.rei.impl.common.entry.TypedEntryStack;
+import me.shedaniel.rei.impl.common.entry.type.EntryTypeRegistryImpl;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DisplayIndexTest {
+    private static final CategoryIdentifier<?> CATEGORY = new CategoryIdentifierImpl<>(new ResourceLocation("test", "category"));
+    private static final StringDefinition ITEM = new StringDefinition("item");
+    private static final StringDefinition FLUID = new StringDefinition("fluid");
+    private static final EntryTypeRegistryImpl TYPES = new EntryTypeRegistryImpl();
+    
+    @BeforeAll
+    static void setup() {
+        Internals.attachInstance(EntryIngredientImpl.INSTANCE, Internals.EntryIngredientProvider.class);
+        TYPES.register(ITEM.getType().getId(), ITEM);
+        TYPES.register(FLUID.getType().getId(), FLUID);
+        // Buckets bridge to the fluid they hold, like the item to fluid bridge of the runtime plugin
+        TYPES.registerBridge(ITEM.getType(), FLUID.getType(), stack -> {
+            if (!stack.getValue().endsWith("_bucket")) return CompoundEventResult.pass();
+            return CompoundEventResult.interruptTrue(Stream.of(FLUID.of(stack.getValue().substring(0, stack.getValue().length() - "_bucket".length()))));
+        });
+    }
+    
+    @Test
+    void testBridgedStacks() {
+        DisplayIndex index = new DisplayIndex(TYPES);
+        index.index(display(FLUID.of("lava"), ITEM.of("obsidian")), 0);
+        index.index(display(ITEM.of("lava_bucket"), ITEM.of("bucket")), 1);
+        index.index(display(FLUID.of("water"), ITEM.of("ice")), 2);
+        
+        assertEquals(IntList.of(0, 1), index.find(CATEGORY, List.of(), List.of(ITEM.of("lava_bucket"))));
+        assertEquals(IntList.of(1), index.find(CATEGORY, List.of(ITEM.of("bucket")), List.of()));
+        assertEquals(IntList.of(), index.find(CATEGORY, List.of(), List.of(ITEM.of("stone"))));
+        // Items bridge to fluids, so fluids cannot be looked up without bridging every indexed item
+        assertNull(index.find(CATEGORY, List.of(), List.of(FLUID.of("lava"))));
+    }
+    
+    private static Display display(EntryStack<?> input, EntryStack<?> output) {
+        return new Display() {
+            @Override
+            public List<EntryIngredient> getInputEntries() {
+                return List.of(EntryIngredient.of(input));
+            }
+            
+            @Override
+            public List<EntryIngredient> getOutputEntries() {
+                return List.of(EntryIngredient.of(output));
+            }
+            
+            @Override
+            public CategoryIdentifier<?> getCategoryIdentifier() {
+                return CATEGORY;
+            }
+        };
+    }
+    
+    private static class StringDefinition implements EntryDefinition<String> {
+        private final EntryType<String> type;
+        
+        private StringDefinition(String path) {
+            ResourceLocation id = new ResourceLocation("test", path);
+            this.type = new EntryType<>() {
+                @Override
+                public ResourceLocation getId() {
+                    return id;
+                }
+                
+                @Override
+                public EntryDefinition<String> getDefinition() {
+                    return StringDefinition.this;
+                }
+            };
+        }
+        
+        public EntryStack<String> of(String value) {
+            return new TypedEntryStack<>(this, value);
+        }
+        
+        @Override
+        public Class<String> getValueType() {
+            return String.class;
+        }
+        
+        @Override
+        public EntryType<String> getType() {
+            return type;
+        }
+        
+        @Override
+        public EntryRenderer<String> getRenderer() {
+            return null;
+        }
+        
+        @Override
+        public ResourceLocation getIdentifier(EntryStack<String> entry, String value) {
+            return new ResourceLocation("test", value);
+        }
+        
+        @Override
+        public boolean isEmpty(EntryStack<String> entry, String value) {
+            return false;
+        }
+        
+        @Override
+        public String copy(EntryStack<String> entry, String value) {
+            return value;
+        }
+        
+        @Override
+        public String normalize(EntryStack<String> entry, String value) {
+            return value;
+        }
+        
+        @Override
+        public String wildcard(EntryStack<String> entry, String value) {
+            return value;
+        }
+        
+        @Override
+        public long hash(EntryStack<String> entry, String value, ComparisonContext context) {
+            return 31L * type.getId().hashCode() + value.hashCode();
+        }
+        
+        @Override
+        public boolean equals(String o1, String o2, ComparisonContext context) {
+            return o1.equals(o2);
+        }
+        
+        @Override
+        public EntrySerializer<String> getSerializer() {
+            return null;
+        }
+        
+        @Override
+        public Component asFormattedText(EntryStack<String> entry, String value) {
+            return Component.literal(value);
+        }
+        
+        @Override
+        public Stream<? extends TagKey<?>> getTagsFor(EntryStack<String> entry, String value) {
+            return Stream.empty();
+        }
+    }
+}
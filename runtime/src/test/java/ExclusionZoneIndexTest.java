@@ -0,0 +1,127 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import me.shedaniel.math.Rectangle;
+import me.shedaniel.rei.impl.client.registry.screen.ExclusionZoneIndex;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExclusionZoneIndexTest {
+    private static final int SLOTS = 2000;
+    private static final int SLOT_SIZE = 18;
+    
+    @Test
+    void testMatchesLinearScan() {
+        Random random = new Random(0);
+        List<Rectangle> zones = randomZones(random, 200);
+        zones.add(new Rectangle(-50, -50, Integer.MAX_VALUE, 100));
+        zones.add(new Rectangle(300, 300, 0, 40));
+        ExclusionZoneIndex index = new ExclusionZoneIndex(zones);
+        for (int i = 0; i < 100000; i++) {
+            double x = random.nextDouble() * 1200 - 100, y = random.nextDouble() * 800 - 100;
+            assertEquals(containsLinear(zones, x, y), index.contains(x, y), "Mismatch at " + x + ", " + y);
+        }
+    }
+    
+    @Test
+    void testHash() {
+        List<Rectangle> zones = randomZones(new Random(0), 20);
+        assertEquals(new ExclusionZoneIndex(zones).getHash(), new ExclusionZoneIndex(new ArrayList<>(zones)).getHash());
+        List<Rectangle> moved = new ArrayList<>(zones);
+        moved.set(5, new Rectangle(zones.get(5).x + 1, zones.get(5).y, zones.get(5).width, zones.get(5).height));
+        assertNotEquals(new ExclusionZoneIndex(zones).getHash(), new ExclusionZoneIndex(moved).getHash());
+        assertTrue(ExclusionZoneIndex.EMPTY.getZones().isEmpty());
+    }
+    
+    /**
+     * Lays out an overlay grid the way the entry list does, testing the four corners of every slot,
+     * with the zones scanned linearly versus through the index.
+     */
+    @Test
+    void testLayout() {
+        for (int zoneCount : new int[]{1, 8, 32, 128, 512}) {
+            List<Rectangle> zones = randomZones(new Random(zoneCount), zoneCount);
+            assertEquals(layout((x, y) -> containsLinear(zones, x, y)), layout(new ExclusionZoneIndex(zones)::contains));
+        }
+    }
+    
+    /**
+     * Times {@link #testLayout()}, reporting the fastest of the runs, including building the index.
+     */
+    @Test
+    @Disabled("Benchmark, run manually")
+    void benchmarkLayout(TestReporter reporter) {
+        for (int zoneCount : new int[]{1, 8, 32, 128, 512}) {
+            List<Rectangle> zones = randomZones(new Random(zoneCount), zoneCount);
+            long linearTime = Long.MAX_VALUE, indexedTime = Long.MAX_VALUE;
+            for (int run = 0; run < 20; run++) {
+                long start = System.nanoTime();
+                layout((x, y) -> containsLinear(zones, x, y));
+                linearTime = Math.min(linearTime, System.nanoTime() - start);
+                start = System.nanoTime();
+                layout(new ExclusionZoneIndex(zones)::contains);
+                indexedTime = Math.min(indexedTime, System.nanoTime() - start);
+            }
+            reporter.publishEntry(zoneCount + " zones", String.format("linear %.3fms, indexed %.3fms", linearTime / 1e6, indexedTime / 1e6));
+        }
+    }
+    
+    private static int layout(ZoneQuery query) {
+        int fits = 0, columns = 50;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            int left = (slot % columns) * SLOT_SIZE, top = (slot / columns) * SLOT_SIZE;
+            if (!query.contains(left, top) && !query.contains(left + SLOT_SIZE, top)
+                && !query.contains(left, top + SLOT_SIZE) && !query.contains(left + SLOT_SIZE, top + SLOT_SIZE)) {
+                fits++;
+            }
+        }
+        return fits;
+    }
+    
+    private static boolean containsLinear(List<Rectangle> zones, double x, double y) {
+        for (Rectangle zone : zones) {
+            if (zone.contains(x, y)) return true;
+        }
+        return false;
+    }
+    
+    private static List<Rectangle> randomZones(Random random, int count) {
+        List<Rectangle> zones = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            zones.add(new Rectangle(random.nextInt(1000) - 50, random.nextInt(720) - 50, random.nextInt(120) + 1, random.nextInt(120) + 1));
+        }
+        return zones;
+    }
+    
+    @FunctionalInterface
+    private interface ZoneQuery {
+        boolean contains(double x, double y);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import me.shedaniel.rei.impl.common.transfer.IngredientFlow;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IngredientFlowTest {
+    @Test
+    void testSharedItems() {
+        // Two ingredients accept planks of either kind, but only one kind is enough for both
+        IngredientFlow flow = new IngredientFlow(new int[][]{{0, 1}, {0, 1}}, new int[]{64, 3});
+        assertEquals(32, flow.countCrafts(Integer.MAX_VALUE));
+        assertEquals(16, flow.countCrafts(16));
+        int[] assignment = new int[2];
+        assertTrue(flow.solve(32, assignment));
+        assertArrayEquals(new int[]{0, 0}, assignment);
+        assertTrue(flow.solve(3, assignment));
+        assertFalse(flow.solve(33, null));
+    }
+    
+    @Test
+    void testMissingIngredient() {
+        IngredientFlow flow = new IngredientFlow(new int[][]{{0}, {}}, new int[]{64});
+        assertEquals(0, flow.countCrafts(Integer.MAX_VALUE));
+        assertFalse(flow.solve(1, null));
+    }
+    
+    @Test
+    void testEmptyRecipe() {
+        IngredientFlow flow = new IngredientFlow(new int[0][], new int[0]);
+        assertEquals(Integer.MAX_VALUE, flow.countCrafts(Integer.MAX_VALUE));
+        assertEquals(64, flow.countCrafts(64));
+    }
+    
+    @Test
+    void testLargeAmounts() {
+        IngredientFlow flow = new IngredientFlow(new int[][]{{0}, {1}}, new int[]{Integer.MAX_VALUE, Integer.MAX_VALUE - 1});
+        assertEquals(Integer.MAX_VALUE - 1, flow.countCrafts(Integer.MAX_VALUE));
+        assertEquals(Integer.MAX_VALUE, new IngredientFlow(new int[][]{{0}}, new int[]{Integer.MAX_VALUE}).countCrafts(Integer.MAX_VALUE));
+    }
+    
+    @Test
+    void testAgainstExhaustiveSearch() {
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            int ingredientCount = 1 + random.nextInt(6);
+            int itemCount = 1 + random.nextInt(5);
+            int[] amounts = new int[itemCount];
+            for (int item = 0; item < itemCount; item++) {
+                amounts[item] = random.nextInt(20);
+            }
+            int[][] candidates = new int[ingredientCount][];
+            for (int ingredient = 0; ingredient < ingredientCount; ingredient++) {
+                candidates[ingredient] = random.ints(random.nextInt(itemCount + 1), 0, itemCount).distinct().toArray();
+            }
+            
+            IngredientFlow flow = new IngredientFlow(candidates, amounts);
+            int expected = 0;
+            while (expected < 64 && isFeasible(candidates, amounts, expected + 1, new int[itemCount], 0)) {
+                expected++;
+            }
+            assertEquals(expected, flow.countCrafts(64));
+            
+            for (int crafts = 1; crafts <= expected; crafts++) {
+                int[] assignment = new int[ingredientCount];
+                assertTrue(flow.solve(crafts, assignment));
+                int[] used = new int[itemCount];
+                for (int ingredient = 0; ingredient < ingredientCount; ingredient++) {
+                    int item = assignment[ingredient];
+                    assertTrue(contains(candidates[ingredient], item));
+                    used[item] += crafts;
+                }
+                for (int item = 0; item < itemCount; item++) {
+                    assertTrue(used[item] <= amounts[item]);
+                }
+            }
+            if (expected < 64) {
+                assertFalse(flow.solve(expected + 1, null));
+            }
+        }
+    }
+    
+    private static boolean isFeasible(int[][] candidates, int[] amounts, int crafts, int[] used, int ingredient) {
+        if (ingredient == candidates.length) return true;
+        for (int item : candidates[ingredient]) {
+            if (used[item] + crafts <= amounts[item]) {
+                used[item] += crafts;
+                boolean feasible = isFeasible(candidates, amounts, crafts, used, ingredient + 1);
+                used[item] -= crafts;
+                if (feasible) return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean contains(int[] array, int value) {
+        for (int i : array) {
+            if (i == value) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import me.shedaniel.rei.api.common.entry.comparison.ComparisonContext;
+import me.shedaniel.rei.api.common.entry.comparison.EntryComparator;
+import me.shedaniel.rei.impl.common.entry.comparison.EntryComparatorRegistryImpl;
+import me.shedaniel.rei.impl.common.entry.comparison.NbtHasherProviderImpl;
+import net.minecraft.nbt.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NbtHasherTest {
+    private static final int CORPUS_SIZE = 500_000;
+    
+    @Test
+    void testCollisions() {
+        EntryComparator<Tag> hasher = NbtHasherProviderImpl.INSTANCE.provide();
+        LongSet hashes = new LongOpenHashSet(CORPUS_SIZE);
+        IntSet legacyHashes = new IntOpenHashSet(CORPUS_SIZE);
+        Random random = new Random(42);
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            CompoundTag tag = createTag(i, random);
+            hashes.add(hasher.hash(ComparisonContext.EXACT, tag));
+            legacyHashes.add(legacyHash(tag));
+        }
+        
+        assertEquals(CORPUS_SIZE, hashes.size());
+        assertTrue(legacyHashes.size() < hashes.size(), () -> "Expected the legacy 32-bit hash to collide over " + CORPUS_SIZE + " distinct tags");
+    }
+    
+    @Test
+    void testDistinctVariants() {
+        EntryComparator<Tag> hasher = NbtHasherProviderImpl.INSTANCE.provide();
+        Long2LongMap foldedHashes = new Long2LongOpenHashMap(CORPUS_SIZE);
+        Random random = new Random(42);
+        long first = 0, second = 0;
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            long hash = hasher.hash(ComparisonContext.EXACT, createTag(i, random));
+            long folded = Long.hashCode(hash);
+            if (foldedHashes.containsKey(folded) && foldedHashes.get(folded) != hash) {
+                first = foldedHashes.get(folded);
+                second = hash;
+                break;
+            }
+            foldedHashes.put(folded, hash);
+        }
+        assertNotEquals(first, second, "Expected two variants whose hashes collide once folded to 32 bits");
+        
+        // The variants of the same entry must keep distinct exact hashes
+        int entryHash = Objects.hashCode("mod:item");
+        assertNotEquals(EntryComparatorRegistryImpl.combineHash(entryHash, first), EntryComparatorRegistryImpl.combineHash(entryHash, second));
+    }
+    
+    @Test
+    void testOrderIndependence() {
+        EntryComparator<Tag> hasher = NbtHasherProviderImpl.INSTANCE.provide();
+        CompoundTag a = new CompoundTag();
+        CompoundTag b = new CompoundTag();
+        for (int i = 0; i < 100; i++) {
+            a.putInt("key" + i, i);
+            b.putInt("key" + (99 - i), 99 - i);
+        }
+        assertEquals(hasher.hash(ComparisonContext.EXACT, a), hasher.hash(ComparisonContext.EXACT, b));
+    }
+    
+    /**
+     * Creates a tag shaped like typical item data, the index makes every tag distinct.
+     */
+    private static CompoundTag createTag(int index, Random random) {
+        CompoundTag tag = new CompoundTag();
+        tag.putInt("Damage", index % 1024);
+        tag.putString("id", "mod:item_" + (index / 1024));
+        ListTag enchantments = new ListTag();
+        for (int i = random.nextInt(3); i > 0; i--) {
+            CompoundTag enchantment = new CompoundTag();
+            enchantment.putString("id", "minecraft:enchantment_" + random.nextInt(40));
+            enchantment.putShort("lvl", (short) (1 + random.nextInt(5)));
+            enchantments.add(enchantment);
+        }
+        tag.put("Enchantments", enchantments);
+        tag.putLongArray("Data", new long[]{random.nextLong(), index});
+        return tag;
+    }
+    
+    private static int legacyHash(Tag tag) {
+        if (tag instanceof ListTag list) {
+            int i = list.size();
+            for (Tag innerTag : list) {
+                i = i * 31 + legacyHash(innerTag);
+            }
+            return i;
+        }
+        if (tag instanceof CompoundTag compound) {
+            int i = 1;
+            for (String key : compound.getAllKeys()) {
+                i = i * 31 + (Objects.hashCode(key) ^ legacyHash(compound.get(key)));
+            }
+            return i;
+        }
+        return tag.hashCode();
+    }
+}
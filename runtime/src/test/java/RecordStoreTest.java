@@ -0,0 +1,145 @@
+/*
+ * This file is licensed under the MIT License, part of Roughly Enough Items.
+ * Copyright (c) 2018, 2019, 2020, 2021, 2022 shedaniel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import me.shedaniel.rei.impl.Internals;
+import me.shedaniel.rei.impl.client.config.RecordStore;
+import net.minecraft.nbt.CompoundTag;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordStoreTest {
+    @TempDir
+    Path folder;
+    
+    @BeforeAll
+    static void setup() {
+        Internals.attachInstanceSupplier(InputMethodTest.LOGGER, "logger");
+    }
+    
+    @Test
+    void testAppendAndRemove() throws IOException {
+        Path path = folder.resolve("records.bin");
+        RecordStore store = new RecordStore(path);
+        assertTrue(store.load().isEmpty());
+        UUID first = UUID.randomUUID(), second = UUID.randomUUID();
+        store.put(first, createTag(1));
+        store.put(second, createTag(2));
+        long size = Files.size(path);
+        store.remove(first);
+        // Removing appends a record instead of rewriting the file
+        assertTrue(Files.size(path) > size);
+        
+        RecordStore reloaded = new RecordStore(path);
+        assertEquals(List.of(second), new ArrayList<>(reloaded.load().keySet()));
+        assertEquals(createTag(2), reloaded.getRecords().get(second));
+    }
+    
+    @Test
+    void testSync() {
+        Path path = folder.resolve("records.bin");
+        RecordStore store = new RecordStore(path);
+        store.load();
+        store.sync(List.of(createTag(1), createTag(2), createTag(3)));
+        store.sync(List.of(createTag(1), createTag(3), createTag(4)));
+        assertEquals(List.of(createTag(1), createTag(3), createTag(4)), new ArrayList<>(new RecordStore(path).load().values()));
+        store.sync(List.of(createTag(4), createTag(1)));
+        assertEquals(List.of(createTag(4), createTag(1)), new ArrayList<>(new RecordStore(path).load().values()));
+    }
+    
+    @Test
+    void testCompaction() throws IOException {
+        Path path = folder.resolve("records.bin");
+        RecordStore store = new RecordStore(path);
+        store.load();
+        UUID kept = UUID.randomUUID();
+        store.put(kept, createTag(0));
+        long size = Files.size(path);
+        for (int i = 0; i < 100; i++) {
+            UUID key = UUID.randomUUID();
+            store.put(key, createTag(i));
+            store.remove(key);
+        }
+        assertTrue(Files.size(path) < size * 20);
+        assertEquals(List.of(kept), new ArrayList<>(new RecordStore(path).load().keySet()));
+    }
+    
+    @Test
+    void testTruncatedRecord() throws IOException {
+        Path path = folder.resolve("records.bin");
+        RecordStore store = new RecordStore(path);
+        store.load();
+        UUID first = UUID.randomUUID();
+        store.put(first, createTag(1));
+        store.put(UUID.randomUUID(), createTag(2));
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 3));
+        
+        RecordStore reloaded = new RecordStore(path);
+        assertEquals(List.of(first), new ArrayList<>(reloaded.load().keySet()));
+        // The broken record is dropped from the file on the next change
+        UUID third = UUID.randomUUID();
+        reloaded.put(third, createTag(3));
+        assertEquals(List.of(first, third), new ArrayList<>(new RecordStore(path).load().keySet()));
+    }
+    
+    @Test
+    void testCorruptedLength() throws IOException {
+        for (int length : new int[]{-1, Integer.MAX_VALUE}) {
+            Path path = folder.resolve("records.bin");
+            Files.deleteIfExists(path);
+            RecordStore store = new RecordStore(path);
+            store.load();
+            UUID first = UUID.randomUUID();
+            store.put(first, createTag(1));
+            // The length of the second record follows its type and key
+            int lengthOffset = (int) Files.size(path) + 1 + 16;
+            store.put(UUID.randomUUID(), createTag(2));
+            ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+            bytes.putInt(lengthOffset, length);
+            Files.write(path, bytes.array());
+            
+            // A corrupted length is treated like a truncated record
+            assertEquals(List.of(first), new ArrayList<>(new RecordStore(path).load().keySet()));
+        }
+    }
+    
+    private static CompoundTag createTag(int value) {
+        CompoundTag tag = new CompoundTag();
+        tag.putInt("Value", value);
+        tag.putString("Name", "entry" + value);
+        return tag;
+    }
+}